@@ -16,7 +16,7 @@ import java.util.UUID;
 
 @Data
 @ToString
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(value = "books")
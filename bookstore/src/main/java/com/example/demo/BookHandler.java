@@ -1,5 +1,7 @@
 package com.example.demo;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
@@ -14,15 +16,28 @@ import static org.springframework.web.reactive.function.server.ServerResponse.*;
 class BookHandler {
 
     private final BookRepository posts;
+    private final int flushSize;
 
-    public BookHandler(BookRepository posts) {
+    public BookHandler(BookRepository posts, @Value("${streaming.flush-size:100}") int flushSize) {
         this.posts = posts;
+        this.flushSize = flushSize;
     }
 
     public Mono<ServerResponse> all(ServerRequest req) {
         return ok().body(this.posts.findAll(), Book.class);
     }
 
+    // streams the books with `Accept: application/x-ndjson`, a client processes every book when it arrives.
+    public Mono<ServerResponse> stream(ServerRequest req) {
+        return ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(this.posts.findAll().limitRate(this.flushSize), Book.class);
+    }
+
+    public Mono<ServerResponse> events(ServerRequest req) {
+        return ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(this.posts.findAll().limitRate(this.flushSize), Book.class);
+    }
+
     public Mono<ServerResponse> create(ServerRequest req) {
         return req.bodyToMono(Book.class)
                 .flatMap(this.posts::save)
@@ -42,9 +57,11 @@ class BookHandler {
                         (data) -> {
                             Book p = (Book) data[0];
                             Book p2 = (Book) data[1];
-                            p.setTitle(p2.getTitle());
-                            p.setDescription(p2.getDescription());
-                            return p;
+                            // do not modify the found book, it could be the instance in the entity cache.
+                            return p.toBuilder()
+                                    .title(p2.getTitle())
+                                    .description(p2.getDescription())
+                                    .build();
                         },
                         existed,
                         req.bodyToMono(Book.class)
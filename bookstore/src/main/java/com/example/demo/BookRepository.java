@@ -1,5 +1,6 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.CachedRepository;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
@@ -7,6 +8,7 @@ import reactor.core.publisher.Flux;
 
 import java.util.UUID;
 
+@CachedRepository(maximumSize = 1_000)
 interface BookRepository extends R2dbcRepository<Book, UUID> {
 
     @Query("SELECT * FROM books where title like :title")
@@ -1,10 +1,13 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.EntityCacheConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@Import(EntityCacheConfig.class)
 @Slf4j
 public class DemoApplication {
 
@@ -1,10 +1,19 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.AdmissionControlFilter;
+import io.r2dbc.spi.ConnectionFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import java.time.Duration;
+import java.util.List;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
 import static org.springframework.web.reactive.function.server.RequestPredicates.path;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
@@ -20,6 +29,8 @@ class WebConfig {
                         .nest(
                                 path(""),
                                 () -> route()
+                                        .GET("", accept(MediaType.APPLICATION_NDJSON), bookHandler::stream)
+                                        .GET("", accept(MediaType.TEXT_EVENT_STREAM), bookHandler::events)
                                         .GET("", bookHandler::all)
                                         .POST("", bookHandler::create)
                                         .build()
@@ -42,4 +53,19 @@ class WebConfig {
                         .build()
                 ).build();
     }
+
+    @Bean
+    AdmissionControlFilter admissionControlFilter(ConnectionFactory connectionFactory, Environment env) {
+        return new AdmissionControlFilter(
+                List.of(
+                        AdmissionControlFilter.RouteGroup.of("list", true, env.getProperty("admission.list.max-concurrency", Integer.class, 16), HttpMethod.GET, "/books", "/books/{id}/comments")
+                ),
+                AdmissionControlFilter.RouteGroup.of("default", false, env.getProperty("admission.default.max-concurrency", Integer.class, 128), null, "/**"),
+                connectionFactory,
+                env.getProperty("admission.max-pending-acquire", Integer.class, 10),
+                Duration.parse(env.getProperty("admission.max-latency", "PT1S")),
+                Duration.parse(env.getProperty("admission.retry-after", "PT1S")),
+                Duration.parse(env.getProperty("admission.latency-half-life", "PT10S"))
+        );
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.demo;
 
 
+import com.example.r2dbc.support.EntityCacheConfig;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
@@ -46,7 +47,7 @@ public class RepositoryTest {
     }
 
     @TestConfiguration
-    @Import(R2dbcConfig.class)
+    @Import({R2dbcConfig.class, EntityCacheConfig.class})
     @ImportAutoConfiguration(JacksonAutoConfiguration.class)
     static class TestConfig {
 
@@ -109,6 +110,24 @@ public class RepositoryTest {
 
     }
 
+    @Test
+    public void testCachedFindById() {
+        var saved = this.books.save(Book.builder().title("test title").description("content of test").build()).block();
+
+        // the saved book is evicted, then the update is read by findById.
+        this.books.findById(saved.getId())
+                .flatMap(p -> this.books.save(p.toBuilder().title("updated").build()))
+                .then(this.books.findById(saved.getId()))
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> assertEquals("updated", p.getTitle()))
+                .verifyComplete();
+
+        this.books.deleteById(saved.getId())
+                .then(this.books.findById(saved.getId()))
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
     @Test
     public void testAuthorInsertAndQuery() {
         var author = new Author(
@@ -1,10 +1,12 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.ConnectionPoolWarmupConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.annotation.*;
 import org.springframework.data.domain.ReactiveAuditorAware;
 import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
@@ -17,6 +19,7 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @SpringBootApplication
+@Import(ConnectionPoolWarmupConfig.class)
 @Slf4j
 public class DemoApplication {
 
@@ -1,23 +1,40 @@
 package com.example.demo;
 
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import io.r2dbc.postgresql.codec.Json;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
 import org.reactivestreams.Publisher;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.jackson.JacksonComponent;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.annotation.CreatedBy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Version;
 import org.springframework.data.domain.ReactiveAuditorAware;
+import org.springframework.data.mapping.callback.EntityCallback;
 import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
 import org.springframework.data.r2dbc.mapping.OutboundRow;
 import org.springframework.data.r2dbc.mapping.event.AfterConvertCallback;
@@ -29,24 +46,72 @@ import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import tools.jackson.core.JacksonException;
 import tools.jackson.core.JsonGenerator;
 import tools.jackson.core.JsonParser;
 import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.SerializationContext;
 import tools.jackson.databind.ValueDeserializer;
 import tools.jackson.databind.ValueSerializer;
 import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.JsonNodeFactory;
+import tools.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 import static org.springframework.web.reactive.function.server.ServerResponse.*;
@@ -66,7 +131,7 @@ class WebConfig {
 
     @Bean
     public RouterFunction<ServerResponse> routes(
-            PostLogRepository logs,
+            PostLogHandler postLogHandler,
             PostHandler postHandler) {
 
         var postRoutes = route()
@@ -75,9 +140,10 @@ class WebConfig {
                 .GET("{id}", postHandler::get)
                 .PUT("{id}", postHandler::update)
                 .DELETE("{id}", postHandler::delete)
+                .GET("{id}/versions/{version}", postHandler::getVersion)
                 .build();
         return route()
-                .GET("/logs", req -> ServerResponse.ok().body(logs.findAll(), PostLog.class))
+                .GET("/logs", postLogHandler::all)
                 .path("/posts", () -> postRoutes)
                 .build();
     }
@@ -114,9 +180,11 @@ class PgJsonObjectJsonComponent {
 class PostHandler {
 
     private final PostRepository posts;
+    private final PostSnapshots snapshots;
 
-    public PostHandler(PostRepository posts) {
+    public PostHandler(PostRepository posts, PostSnapshots snapshots) {
         this.posts = posts;
+        this.snapshots = snapshots;
     }
 
     public Mono<ServerResponse> all(ServerRequest req) {
@@ -129,14 +197,38 @@ class PostHandler {
                 .flatMap(post -> created(URI.create("/posts/" + post.id())).build());
     }
 
+    // with `If-None-Match`, only the version is read for the ETag, and the post is read only if it is modified.
+    // else the ETag and the body come from the same read.
     public Mono<ServerResponse> get(ServerRequest req) {
-        return this.posts.findById(UUID.fromString(req.pathVariable("id")))
-                .flatMap(post -> ok().body(Mono.just(post), Post.class))
+        var id = UUID.fromString(req.pathVariable("id"));
+        if (req.headers().header(HttpHeaders.IF_NONE_MATCH).isEmpty()) {
+            return getPost(id);
+        }
+        return this.posts.findVersionById(id)
+                .flatMap(version -> {
+                    var etag = etag(version);
+                    if (req.exchange().checkNotModified(etag)) {
+                        return status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                    }
+                    return getPost(id);
+                })
+                .switchIfEmpty(notFound().build());
+    }
+
+    private Mono<ServerResponse> getPost(UUID id) {
+        return this.posts.findById(id)
+                .flatMap(post -> ok().eTag(etag(post.version())).body(Mono.just(post), Post.class))
                 .switchIfEmpty(notFound().build());
     }
 
+    // with `If-Match`, the post is only updated if it is still one of the listed versions, else 412 is returned.
+    // a missing or empty body is 400.
     public Mono<ServerResponse> update(ServerRequest req) {
-        var existed = this.posts.findById(UUID.fromString(req.pathVariable("id")));
+        var ifMatch = ifMatchVersions(req);
+        var existed = this.posts.findById(UUID.fromString(req.pathVariable("id")))
+                .cache();
+        var matched = existed
+                .filter(p -> ifMatch.isEmpty() || ifMatch.get().contains(p.version() == null ? 0L : p.version()));
         return Mono
                 .zip(
                         (data) -> {
@@ -150,12 +242,51 @@ class PostHandler {
                                     p.version()
                             );
                         },
-                        existed,
+                        matched,
                         req.bodyToMono(Post.class)
+                                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("request body is missing")))
                 )
                 .cast(Post.class)
                 .flatMap(this.posts::save)
-                .flatMap(post -> noContent().build())
+                .flatMap(post -> noContent().eTag(etag(post.version())).build())
+                .onErrorResume(OptimisticLockingFailureException.class, _ -> status(ifMatch.isPresent() ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build())
+                // the post is read once, it exists but is not a listed version, or it does not exist.
+                .switchIfEmpty(Mono.defer(() -> existed
+                        .flatMap(_ -> status(HttpStatus.PRECONDITION_FAILED).build())
+                        .switchIfEmpty(notFound().build())));
+    }
+
+    // the ETag of a post is its `@Version`, the posts inserted by the scripts have no version yet.
+    static String etag(Long version) {
+        return "\"" + (version == null ? 0 : version) + "\"";
+    }
+
+    // the versions listed by `If-Match`, eg. `"1", W/"2"`, empty if the header is absent or `*`, an unknown ETag never matches.
+    static Optional<Set<Long>> ifMatchVersions(ServerRequest req) {
+        var values = req.headers().header(HttpHeaders.IF_MATCH).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+        if (values.isEmpty() || values.contains("*")) {
+            return Optional.empty();
+        }
+        return Optional.of(values.stream()
+                .map(value -> value.replaceFirst("^W/", "").replace("\"", ""))
+                .filter(value -> value.matches("\\d+"))
+                .map(Long::valueOf)
+                .collect(Collectors.toSet()));
+    }
+
+    // the post as it was saved at the version, rebuilt from the audit logs, 409 if a log of the version is lost.
+    public Mono<ServerResponse> getVersion(ServerRequest req) {
+        var version = req.pathVariable("version");
+        if (!version.matches("\\d{1,18}")) {
+            return badRequest().build();
+        }
+        return this.snapshots.reconstruct(UUID.fromString(req.pathVariable("id")), Long.parseLong(version))
+                .flatMap(post -> ok().eTag(etag(post.version())).body(Mono.just(post), Post.class))
+                .onErrorResume(PostSnapshots.BrokenChainException.class, _ -> status(HttpStatus.CONFLICT).build())
                 .switchIfEmpty(notFound().build());
     }
 
@@ -167,6 +298,33 @@ class PostHandler {
     }
 }
 
+// the logs are always read in a time range, so only the partitions of the range are scanned.
+@Component
+@RequiredArgsConstructor
+class PostLogHandler {
+    static final Duration DEFAULT_RANGE = Duration.ofDays(7);
+
+    private final PostLogRepository logs;
+
+    // eg. `/logs?entityId=...&from=2026-10-01T00:00&to=2026-11-01T00:00`, the logs of the last 7 days by default.
+    public Mono<ServerResponse> all(ServerRequest req) {
+        LocalDateTime from;
+        LocalDateTime to;
+        Optional<UUID> entityId;
+        try {
+            to = req.queryParam("to").map(LocalDateTime::parse).orElseGet(LocalDateTime::now);
+            from = req.queryParam("from").map(LocalDateTime::parse).orElseGet(() -> to.minus(DEFAULT_RANGE));
+            entityId = req.queryParam("entityId").map(UUID::fromString);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return badRequest().build();
+        }
+        var result = entityId
+                .map(id -> this.logs.findByEntityIdBetween(id, from, to))
+                .orElseGet(() -> this.logs.findByCreatedAtBetween(from, to));
+        return ok().body(result, PostLog.class);
+    }
+}
+
 @Configuration
 @EnableR2dbcAuditing
 class DataR2dbcConfig {
@@ -181,6 +339,10 @@ interface PostRepository extends R2dbcRepository<Post, UUID> {
 
     @Query("SELECT * FROM posts where title like :title")
     public Flux<Post> findByTitleContains(String title);
+
+    // the posts inserted by the scripts have no version yet, it is 0 as in the ETag.
+    @Query("SELECT coalesce(version, 0) FROM posts WHERE id = :id")
+    Mono<Long> findVersionById(UUID id);
 }
 
 @Table(value = "posts")
@@ -212,7 +374,7 @@ record Post(
 
 }
 
-// save a snapshot into a auditing log table.
+// save a snapshot into a auditing log table, the callbacks are timed and sampled by `EntityCallbackInstrumentation`.
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -223,52 +385,1006 @@ class PostCallback implements
         AfterSaveCallback<Post> {
     final ApplicationEventPublisher publisher;
     final JsonMapper jsonMapper;
+    final ReactiveAuditorAware<String> auditorAware;
+    final PostLogOutbox outbox;
+    final PostSnapshots snapshots;
 
+    // the log is audited here, it is inserted later by the `AuditLogWriter` or the outbox relay without the auditing callback.
     @SneakyThrows
     @Override
     public Publisher<Post> onAfterSave(Post entity, OutboundRow outboundRow, SqlIdentifier table) {
-        log.info("[onAfterSave]::: entity :{}, outboundRow :{}, table: {}", entity, outboundRow, table);
-        var entityLog = PostLog.of(entity.id(), entity.getClass().getName(), Json.of(jsonMapper.writeValueAsString(entity)));
-        this.publisher.publishEvent(entityLog);
-        return Mono.just(entity);
-
+        log.trace("[onAfterSave]::: entity :{}, outboundRow :{}, table: {}", entity, outboundRow, table);
+        var createdAt = LocalDateTime.now();
+        var snapshot = this.snapshots.encode(entity, createdAt);
+        return this.auditorAware.getCurrentAuditor()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(auditor -> PostLog.of(entity.id(), entity.getClass().getName(), snapshot, createdAt, auditor.orElse(null)))
+                .flatMap(entityLog -> {
+                    if (this.outbox.isEnabled()) {
+                        return this.outbox.append(entityLog).thenReturn(entity);
+                    }
+                    this.publisher.publishEvent(entityLog);
+                    return Mono.just(entity);
+                });
     }
 
     @Override
     public Publisher<Post> onAfterConvert(Post entity, SqlIdentifier table) {
-        log.info("[onAfterConvert]::: entity :{}, table: {}", entity, table);
+        log.trace("[onAfterConvert]::: entity :{}, table: {}", entity, table);
         return Mono.just(entity);
     }
 
     @Override
     public Publisher<Post> onBeforeConvert(Post entity, SqlIdentifier table) {
-        log.info("[onBeforeConvert]::: entity :{}, table: {}", entity, table);
+        log.trace("[onBeforeConvert]::: entity :{}, table: {}", entity, table);
         return Mono.just(entity);
     }
 
     @Override
     public Publisher<Post> onBeforeSave(Post entity, OutboundRow row, SqlIdentifier table) {
-        log.info("[onBeforeSave]::: entity :{}, outboundRow :{}, table: {}", entity, row, table);
+        log.trace("[onBeforeSave]::: entity :{}, outboundRow :{}, table: {}", entity, row, table);
         return Mono.just(entity);
     }
 }
 
+// times every `EntityCallback` bean, a callback invocation is recorded into `entity.callback` tagged by the callback,
+// the callback type(eg. `AfterConvert`), the entity and the outcome, and only a sample of the invocations is logged.
+@Component
+@Slf4j
+class EntityCallbackInstrumentation implements BeanPostProcessor {
+
+    static final String METRIC_NAME = "entity.callback";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final double logSampleRate;
+    private final Duration slowThreshold;
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+
+    EntityCallbackInstrumentation(ObjectProvider<MeterRegistry> meterRegistry,
+                                  @Value("${entity.callbacks.log-sample-rate:0.01}") double logSampleRate,
+                                  @Value("${entity.callbacks.slow-threshold:PT0.1S}") Duration slowThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.logSampleRate = logSampleRate;
+        this.slowThreshold = slowThreshold;
+    }
+
+    // a class-based proxy keeps the entity type of the callback resolvable by `EntityCallbacks`.
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof EntityCallback<?>) || AopUtils.isAopProxy(bean) || Modifier.isFinal(bean.getClass().getModifiers())) {
+            return bean;
+        }
+        var proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice((MethodInterceptor) this::invoke);
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    private Object invoke(MethodInvocation invocation) throws Throwable {
+        var method = invocation.getMethod();
+        var arguments = invocation.getArguments();
+        if (!method.getName().startsWith("on") || arguments.length == 0 || arguments[0] == null) {
+            return invocation.proceed();
+        }
+        var callback = AopUtils.getTargetClass(invocation.getThis()).getSimpleName();
+        var type = method.getName().substring(2);
+        var entity = arguments[0].getClass().getSimpleName();
+        if (Publisher.class.isAssignableFrom(method.getReturnType())) {
+            return Mono.defer(() -> timed(invocation, callback, type, entity));
+        }
+        var started = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            record(callback, type, entity, "error", started);
+            throw e;
+        }
+        record(callback, type, entity, "success", started);
+        return result;
+    }
+
+    // the clock starts on subscribe and stops on the terminal signal of the callback, before it reaches the downstream,
+    // so neither the assembly of the save pipeline nor the work after the callback is counted.
+    private Mono<?> timed(MethodInvocation invocation, String callback, String type, String entity) {
+        var started = System.nanoTime();
+        var recorded = new AtomicBoolean();
+        Consumer<String> outcome = o -> {
+            if (recorded.compareAndSet(false, true)) {
+                record(callback, type, entity, o, started);
+            }
+        };
+        Publisher<?> publisher;
+        try {
+            publisher = (Publisher<?>) invocation.proceed();
+        } catch (Throwable e) {
+            outcome.accept("error");
+            return Mono.error(e);
+        }
+        return Mono.from(publisher)
+                .doOnSuccess(_ -> outcome.accept("success"))
+                .doOnError(_ -> outcome.accept("error"))
+                .doOnCancel(() -> outcome.accept("cancelled"));
+    }
+
+    private void record(String callback, String type, String entity, String outcome, long started) {
+        var elapsed = Duration.ofNanos(System.nanoTime() - started);
+        var registry = this.meterRegistry.getIfAvailable();
+        if (registry != null) {
+            this.timers.computeIfAbsent(List.of(callback, type, entity, outcome), _ -> Timer.builder(METRIC_NAME)
+                            .description("The time spent in the entity callbacks")
+                            .tag("callback", callback)
+                            .tag("type", type)
+                            .tag("entity", entity)
+                            .tag("outcome", outcome)
+                            .publishPercentileHistogram()
+                            .register(registry))
+                    .record(elapsed);
+        }
+        if (elapsed.compareTo(this.slowThreshold) >= 0) {
+            log.warn("[{}] {} of {} is slow, took {} ms, outcome: {}", callback, type, entity, elapsed.toMillis(), outcome);
+        } else if (log.isInfoEnabled() && ThreadLocalRandom.current().nextDouble() < this.logSampleRate) {
+            log.info("[{}] {} of {} took {} µs, outcome: {}", callback, type, entity, elapsed.toNanos() / 1000, outcome);
+        }
+    }
+}
+
+// the callbacks sorted by the total time spent, eg. `/actuator/entitycallbacks`, the histograms are in `/actuator/metrics/entity.callback`.
+@Component
+@Endpoint(id = "entitycallbacks")
+@RequiredArgsConstructor
+class EntityCallbackEndpoint {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @ReadOperation
+    public List<EntityCallbackState> callbacks() {
+        var registry = this.meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return List.of();
+        }
+        return registry.find(EntityCallbackInstrumentation.METRIC_NAME).timers().stream()
+                .map(EntityCallbackState::of)
+                .sorted(Comparator.comparingDouble(EntityCallbackState::totalMillis).reversed())
+                .toList();
+    }
+}
+
+record EntityCallbackState(
+        String callback,
+        String type,
+        String entity,
+        String outcome,
+        long count,
+        double totalMillis,
+        double meanMillis,
+        double maxMillis
+) {
+    static EntityCallbackState of(Timer timer) {
+        var id = timer.getId();
+        return new EntityCallbackState(
+                id.getTag("callback"),
+                id.getTag("type"),
+                id.getTag("entity"),
+                id.getTag("outcome"),
+                timer.count(),
+                timer.totalTime(TimeUnit.MILLISECONDS),
+                timer.mean(TimeUnit.MILLISECONDS),
+                timer.max(TimeUnit.MILLISECONDS)
+        );
+    }
+}
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 class LogEventListener {
-    final PostLogRepository logs;
+    final AuditLogWriter auditLogWriter;
 
     @EventListener
     public void saveLog(PostLog postLog) {
-        log.info("[LogEventListener] saving log: {}", postLog);
-        logs.save(postLog).subscribe();
+        log.debug("[LogEventListener] queueing log: {}", postLog);
+        auditLogWriter.write(postLog);
+    }
+}
+
+// writes the audit logs in the background, the logs are queued and inserted in batches by a multi-row INSERT,
+// when the batch size is reached or every flush interval, so the audit path holds at most one connection.
+@Component
+@Slf4j
+class AuditLogWriter implements SmartLifecycle, MeterBinder {
+
+    // the overflow never waits for a free slot, the log is published on the thread of the saving connection.
+    enum OverflowPolicy {
+        DROP,
+        // appends the log to `audit.writer.spill-file` on the spill thread, the file is replayed when the queue is empty.
+        SPILL
+    }
+
+    private static final String INSERT_COLUMNS = "INSERT INTO post_logs (entity_id, entity_type, entity_version, kind, snapshot, created_at, created_by, version) VALUES ";
+
+    private final DatabaseClient databaseClient;
+    private final PostSnapshots snapshots;
+    private final BlockingQueue<PostLog> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+    private final Duration drainTimeout;
+
+    private final Sinks.Many<Sinks.Empty<Void>> flushRequests = Sinks.many().unicast().onBackpressureBuffer();
+    // the `flush()` callers whose request was not emitted, they are completed by the next flush.
+    private final Queue<Sinks.Empty<Void>> missedFlushes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Object spillLock = new Object();
+
+    private volatile boolean running;
+    private volatile Timer flushTimer;
+    // the spill file is written by one thread, in the order of the spills, never by an event loop.
+    private volatile Scheduler spillScheduler;
+    private Disposable ticks;
+    private Mono<Void> completion;
+
+    AuditLogWriter(DatabaseClient databaseClient,
+                   PostSnapshots snapshots,
+                   @Value("${audit.writer.queue-capacity:10000}") int queueCapacity,
+                   @Value("${audit.writer.batch-size:200}") int batchSize,
+                   @Value("${audit.writer.flush-interval:PT1S}") Duration flushInterval,
+                   @Value("${audit.writer.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                   @Value("${audit.writer.spill-file:${java.io.tmpdir}/post-logs.spill}") Path spillFile,
+                   @Value("${audit.writer.drain-timeout:PT30S}") Duration drainTimeout) {
+        this.databaseClient = databaseClient;
+        this.snapshots = snapshots;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+        this.drainTimeout = drainTimeout;
+    }
+
+    void write(PostLog postLog) {
+        if (!this.running || !this.queue.offer(postLog)) {
+            overflow(postLog);
+            return;
+        }
+        if (this.queue.size() >= this.batchSize && this.flushRequested.compareAndSet(false, true) && !requestFlush(Sinks.empty())) {
+            // the next write or tick requests it again.
+            this.flushRequested.set(false);
+        }
+    }
+
+    // completes when the logs queued before are inserted, and the logs spilled before are written.
+    Mono<Void> flush() {
+        if (!this.running) {
+            return drain();
+        }
+        Sinks.Empty<Void> done = Sinks.empty();
+        if (!requestFlush(done)) {
+            this.missedFlushes.offer(done);
+            // stopped in the meantime, the final drain may have completed the missed flushes already.
+            if (!this.running) {
+                return drain();
+            }
+        }
+        return done.asMono();
+    }
+
+    // never waits, a request racing another one or the stop is not emitted, the queue is drained by the
+    // flush in progress, the next tick or the final drain anyway.
+    private boolean requestFlush(Sinks.Empty<Void> done) {
+        return this.flushRequests.tryEmitNext(done).isSuccess();
+    }
+
+    private Mono<Void> flush(List<Sinks.Empty<Void>> waiting) {
+        return drain()
+                .then(Mono.defer(this::awaitSpills))
+                .doFinally(_ -> waiting.forEach(Sinks.Empty::tryEmitEmpty));
+    }
+
+    // the flush requests are completed by the flush they are taken in, the missed ones are taken by the next flush.
+    private List<Sinks.Empty<Void>> takeMissedFlushes(Sinks.Empty<Void> done) {
+        var waiting = new ArrayList<Sinks.Empty<Void>>();
+        waiting.add(done);
+        for (Sinks.Empty<Void> missed; (missed = this.missedFlushes.poll()) != null; ) {
+            waiting.add(missed);
+        }
+        return waiting;
+    }
+
+    private void overflow(PostLog postLog) {
+        switch (this.overflowPolicy) {
+            case DROP -> drop(postLog);
+            case SPILL -> spill(List.of(postLog));
+        }
+    }
+
+    private void drop(PostLog postLog) {
+        this.dropped.incrementAndGet();
+        this.snapshots.forget(postLog.entityId());
+        log.warn("[AuditLogWriter] audit queue is full, dropped log of entity: {}", postLog.entityId());
+    }
+
+    // a lost log breaks the delta chain of its post, the next save of the post writes a base again.
+    private void lost(List<PostLog> postLogs) {
+        this.failed.addAndGet(postLogs.size());
+        postLogs.forEach(postLog -> this.snapshots.forget(postLog.entityId()));
+    }
+
+    // drains the queue in batches, one batch is inserted at a time.
+    private Mono<Void> drain() {
+        return Mono.defer(() -> {
+            var batch = new ArrayList<PostLog>(this.batchSize);
+            this.queue.drainTo(batch, this.batchSize);
+            if (batch.isEmpty()) {
+                return Mono.empty();
+            }
+            return insert(batch).then(drain());
+        });
+    }
+
+    private Mono<Void> insert(List<PostLog> batch) {
+        var sql = new StringBuilder(INSERT_COLUMNS);
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (");
+            for (int j = 1; j <= 7; j++) {
+                sql.append("$").append(i * 7 + j).append(", ");
+            }
+            sql.append("0)");
+        }
+        var spec = this.databaseClient.sql(sql.toString());
+        for (int i = 0; i < batch.size(); i++) {
+            var postLog = batch.get(i);
+            int p = i * 7;
+            spec = spec.bind(p, Parameter.fromOrEmpty(postLog.entityId(), UUID.class))
+                    .bind(p + 1, Parameter.fromOrEmpty(postLog.entityType(), String.class))
+                    .bind(p + 2, Parameter.fromOrEmpty(postLog.entityVersion(), Long.class))
+                    .bind(p + 3, postLog.kind().name())
+                    .bind(p + 4, Parameter.fromOrEmpty(postLog.snapshot(), Json.class))
+                    .bind(p + 5, Objects.requireNonNullElseGet(postLog.createdAt(), LocalDateTime::now))
+                    .bind(p + 6, Parameter.fromOrEmpty(postLog.createdBy(), String.class));
+        }
+        var started = System.nanoTime();
+        return spec.fetch().rowsUpdated()
+                .doOnNext(rows -> {
+                    this.written.addAndGet(rows);
+                    var timer = this.flushTimer;
+                    if (timer != null) {
+                        timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .then()
+                .onErrorResume(e -> {
+                    log.error("[AuditLogWriter] failed to insert {} logs", batch.size(), e);
+                    if (this.overflowPolicy == OverflowPolicy.SPILL) {
+                        spill(batch);
+                    } else {
+                        lost(batch);
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    // a line per log, the snapshot is the last field, a JSON text has no raw tab or line break.
+    // the lines are appended on the spill thread, or on the caller when the writer is not running.
+    private void spill(List<PostLog> postLogs) {
+        var lines = postLogs.stream()
+                .map(l -> String.join("\t",
+                        String.valueOf(l.entityId()),
+                        l.entityType(),
+                        l.createdAt() == null ? "" : l.createdAt().toString(),
+                        l.createdBy() == null ? "" : l.createdBy(),
+                        String.valueOf(l.entityVersion()),
+                        l.kind().name(),
+                        l.snapshot().asString()))
+                .toList();
+        var scheduler = this.spillScheduler;
+        if (scheduler != null) {
+            try {
+                scheduler.schedule(() -> appendSpill(postLogs, lines));
+                return;
+            } catch (RejectedExecutionException e) {
+                log.debug("[AuditLogWriter] the spill thread is stopped, spill {} logs on the caller", lines.size());
+            }
+        }
+        appendSpill(postLogs, lines);
+    }
+
+    private void appendSpill(List<PostLog> postLogs, List<String> lines) {
+        synchronized (this.spillLock) {
+            try {
+                Files.write(this.spillFile, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                this.spilled.addAndGet(lines.size());
+            } catch (IOException e) {
+                lost(postLogs);
+                log.error("[AuditLogWriter] failed to spill {} logs to {}", lines.size(), this.spillFile, e);
+            }
+        }
+    }
+
+    // completes when the spills scheduled before are written.
+    Mono<Void> awaitSpills() {
+        var scheduler = this.spillScheduler;
+        return scheduler == null ? Mono.empty() : Mono.<Void>empty().subscribeOn(scheduler);
+    }
+
+    // moves the spilled logs back to the queue, the logs not fitting in the queue are spilled again.
+    void replaySpilled() {
+        if (this.queue.size() > 0 || !Files.exists(this.spillFile)) {
+            return;
+        }
+        List<String> lines;
+        synchronized (this.spillLock) {
+            try {
+                lines = Files.readAllLines(this.spillFile);
+                Files.delete(this.spillFile);
+            } catch (IOException e) {
+                log.error("[AuditLogWriter] failed to replay the spilled logs from {}", this.spillFile, e);
+                return;
+            }
+        }
+        log.info("[AuditLogWriter] replaying {} spilled logs", lines.size());
+        var overflowed = new ArrayList<PostLog>();
+        for (String line : lines) {
+            var fields = line.split("\t", 7);
+            var postLog = new PostLog(null,
+                    fields[0].equals("null") ? null : UUID.fromString(fields[0]),
+                    fields[1],
+                    fields[4].equals("null") ? null : Long.valueOf(fields[4]),
+                    PostLog.Kind.valueOf(fields[5]),
+                    Json.of(fields[6]),
+                    fields[2].isEmpty() ? null : LocalDateTime.parse(fields[2]),
+                    fields[3].isEmpty() ? null : fields[3],
+                    null);
+            if (!this.queue.offer(postLog)) {
+                overflowed.add(postLog);
+            }
+        }
+        if (!overflowed.isEmpty()) {
+            spill(overflowed);
+        }
+    }
+
+    @Override
+    public void start() {
+        this.spillScheduler = Schedulers.newSingle("audit-log-spill", true);
+        this.completion = this.flushRequests.asFlux()
+                .concatMap(done -> {
+                    this.flushRequested.set(false);
+                    return flush(takeMissedFlushes(done));
+                })
+                .then(Mono.defer(() -> flush(takeMissedFlushes(Sinks.empty()))))
+                .cache();
+        this.completion.subscribe();
+        this.ticks = Flux.interval(this.flushInterval)
+                .subscribe(_ -> {
+                    if (this.overflowPolicy == OverflowPolicy.SPILL) {
+                        this.spillScheduler.schedule(this::replaySpilled);
+                    }
+                    requestFlush(Sinks.empty());
+                });
+        this.running = true;
+    }
+
+    // the queued logs are inserted before the connection pool is closed, the writes arriving later are overflowed.
+    @Override
+    public void stop() {
+        this.running = false;
+        this.ticks.dispose();
+        this.flushRequests.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        try {
+            this.completion.block(this.drainTimeout);
+        } catch (RuntimeException e) {
+            log.error("[AuditLogWriter] failed to drain the audit queue, {} logs are lost", this.queue.size(), e);
+        }
+        this.spillScheduler.dispose();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    // stopped after the web server, so the in-flight requests can still write logs.
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("audit.writer.queue.depth", this.queue, Collection::size)
+                .description("The audit logs waiting to be inserted")
+                .register(registry);
+        FunctionCounter.builder("audit.writer.written", this.written, AtomicLong::get).register(registry);
+        FunctionCounter.builder("audit.writer.dropped", this.dropped, AtomicLong::get).register(registry);
+        FunctionCounter.builder("audit.writer.spilled", this.spilled, AtomicLong::get).register(registry);
+        FunctionCounter.builder("audit.writer.failed", this.failed, AtomicLong::get).register(registry);
+        this.flushTimer = Timer.builder("audit.writer.flush")
+                .description("The time to insert a batch of audit logs")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
+
+
+// the outbox mode, the log is inserted into `post_logs_outbox` on the connection of the saving transaction, so it is
+// committed or rolled back with the post, and it is moved to `post_logs` in batches by the relay in the background.
+@Component
+@Slf4j
+class PostLogOutbox implements SmartLifecycle {
+
+    private static final String APPEND_SQL = """
+            INSERT INTO post_logs_outbox (entity_id, entity_type, entity_version, kind, snapshot, created_at, created_by)
+            VALUES (:entityId, :entityType, :entityVersion, :kind, :snapshot, :createdAt, :createdBy)
+            """;
+
+    // the outbox rows locked by another relay are skipped, so several instances can relay in parallel.
+    private static final String RELAY_SQL = """
+            WITH relayed AS (
+                DELETE FROM post_logs_outbox
+                WHERE id IN (SELECT id FROM post_logs_outbox ORDER BY id LIMIT :batchSize FOR UPDATE SKIP LOCKED)
+                RETURNING entity_id, entity_type, entity_version, kind, snapshot, created_at, created_by
+            )
+            INSERT INTO post_logs (entity_id, entity_type, entity_version, kind, snapshot, created_at, created_by, version)
+            SELECT entity_id, entity_type, entity_version, kind, snapshot, coalesce(created_at, LOCALTIMESTAMP), created_by, 0 FROM relayed
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration relayInterval;
+
+    private volatile boolean running;
+    private Disposable relays;
+
+    PostLogOutbox(DatabaseClient databaseClient,
+                  @Value("${audit.mode:queue}") String mode,
+                  @Value("${audit.outbox.batch-size:500}") int batchSize,
+                  @Value("${audit.outbox.relay-interval:PT1S}") Duration relayInterval) {
+        this.databaseClient = databaseClient;
+        this.enabled = "outbox".equalsIgnoreCase(mode);
+        this.batchSize = batchSize;
+        this.relayInterval = relayInterval;
+    }
+
+    boolean isEnabled() {
+        return this.enabled;
+    }
+
+    // joins the transaction bound to the subscriber context, eg. the transaction of `PostRepository.save`.
+    Mono<Void> append(PostLog postLog) {
+        return this.databaseClient.sql(APPEND_SQL)
+                .bind("entityId", Parameter.fromOrEmpty(postLog.entityId(), UUID.class))
+                .bind("entityType", Parameter.fromOrEmpty(postLog.entityType(), String.class))
+                .bind("entityVersion", Parameter.fromOrEmpty(postLog.entityVersion(), Long.class))
+                .bind("kind", postLog.kind().name())
+                .bind("snapshot", Parameter.fromOrEmpty(postLog.snapshot(), Json.class))
+                .bind("createdAt", Parameter.fromOrEmpty(postLog.createdAt(), LocalDateTime.class))
+                .bind("createdBy", Parameter.fromOrEmpty(postLog.createdBy(), String.class))
+                .then();
+    }
+
+    // moves the outbox to `post_logs` a batch per statement, until a batch is not full. Emits the relayed count.
+    Mono<Long> relay() {
+        return relayBatch()
+                .expand(relayed -> relayed < this.batchSize ? Mono.empty() : relayBatch())
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> relayBatch() {
+        return this.databaseClient.sql(RELAY_SQL)
+                .bind("batchSize", this.batchSize)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public void start() {
+        if (this.enabled) {
+            this.relays = Flux.interval(this.relayInterval)
+                    .onBackpressureDrop()
+                    .concatMap(_ -> relay()
+                            .doOnNext(relayed -> log.debug("[PostLogOutbox] relayed {} logs", relayed))
+                            .onErrorResume(e -> {
+                                log.error("[PostLogOutbox] failed to relay the outbox", e);
+                                return Mono.empty();
+                            }), 1)
+                    .subscribe();
+        }
+        this.running = true;
+    }
+
+    // the rows left in the outbox are kept, they are relayed by another instance or after the restart.
+    @Override
+    public void stop() {
+        this.running = false;
+        if (this.relays != null) {
+            this.relays.dispose();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+}
+
+// the snapshots of a post are stored as a full `BASE` every `audit.snapshot.base-every` versions, and as RFC 6902
+// JSON Patch `DELTA`s from the previous version between them, a version is rebuilt from its base and deltas.
+// a chain never spans two months, so the retention of a monthly partition never leaves a delta without its base.
+@Component
+@Slf4j
+class PostSnapshots {
+
+    record Encoded(Long entityVersion, PostLog.Kind kind, Json snapshot) {
+    }
+
+    // a log of the chain is lost, the version can not be rebuilt.
+    static class BrokenChainException extends IllegalStateException {
+        BrokenChainException(String message) {
+            super(message);
+        }
+    }
+
+    private record Latest(long version, YearMonth month, JsonNode state) {
+    }
+
+    private final JsonMapper jsonMapper;
+    private final PostLogRepository logs;
+    private final int baseEvery;
+    // the latest state written by this instance, a delta is only encoded against the version just before.
+    private final Map<UUID, Latest> latest;
+
+    PostSnapshots(JsonMapper jsonMapper,
+                  PostLogRepository logs,
+                  @Value("${audit.snapshot.base-every:10}") int baseEvery,
+                  @Value("${audit.snapshot.cache-size:10000}") int cacheSize) {
+        this.jsonMapper = jsonMapper;
+        this.logs = logs;
+        this.baseEvery = baseEvery;
+        this.latest = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Latest> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    // a base is written for the first version, every `baseEvery` versions, when the previous version is unknown here,
+    // and for the first log of the post in the partition of `createdAt`.
+    Encoded encode(Post post, LocalDateTime createdAt) {
+        long version = post.version() == null ? 0 : post.version();
+        var month = YearMonth.from(createdAt);
+        JsonNode state = this.jsonMapper.valueToTree(post);
+        var previous = this.latest.put(post.id(), new Latest(version, month, state));
+        if (version % this.baseEvery == 0 || previous == null || previous.version() != version - 1 || !previous.month().equals(month)) {
+            return new Encoded(version, PostLog.Kind.BASE, Json.of(this.jsonMapper.writeValueAsString(state)));
+        }
+        var patch = JsonPatch.diff(previous.state(), state);
+        return new Encoded(version, PostLog.Kind.DELTA, Json.of(this.jsonMapper.writeValueAsString(patch)));
+    }
+
+    // called when the log of the post is not written, the delta of the next version would have nothing to apply to.
+    void forget(UUID id) {
+        this.latest.remove(id);
+    }
+
+    // reads the latest base not newer than the version and the deltas after it, an error is emitted if a delta is missing.
+    Mono<Post> reconstruct(UUID id, long version) {
+        return this.logs.findSnapshotChain(id, version)
+                .collectList()
+                .filter(chain -> !chain.isEmpty() && chain.getLast().entityVersion() == version)
+                .map(chain -> {
+                    JsonNode state = null;
+                    long expected = chain.getFirst().entityVersion();
+                    for (PostLog postLog : chain) {
+                        if (postLog.entityVersion() != expected++) {
+                            throw new BrokenChainException("the snapshot of version " + (expected - 1) + " is missing, post: " + id);
+                        }
+                        var node = this.jsonMapper.readTree(postLog.snapshot().asString());
+                        state = postLog.kind() == PostLog.Kind.BASE ? node : JsonPatch.apply(state, node);
+                    }
+                    return this.jsonMapper.treeToValue(state, Post.class);
+                });
+    }
+}
+
+// a minimal RFC 6902 JSON Patch, the diff emits `add`, `remove` and `replace`, an array of another size is replaced.
+final class JsonPatch {
+
+    private JsonPatch() {
+    }
+
+    static ArrayNode diff(JsonNode source, JsonNode target) {
+        var patch = JsonNodeFactory.instance.arrayNode();
+        diff("", source, target, patch);
+        return patch;
+    }
+
+    private static void diff(String path, JsonNode source, JsonNode target, ArrayNode patch) {
+        if (source.equals(target)) {
+            return;
+        }
+        if (source.isObject() && target.isObject()) {
+            for (String name : source.propertyNames()) {
+                if (!target.has(name)) {
+                    patch.addObject().put("op", "remove").put("path", path + "/" + escape(name));
+                }
+            }
+            for (Map.Entry<String, JsonNode> property : target.properties()) {
+                var name = property.getKey();
+                if (source.has(name)) {
+                    diff(path + "/" + escape(name), source.get(name), property.getValue(), patch);
+                } else {
+                    patch.addObject().put("op", "add").put("path", path + "/" + escape(name)).set("value", property.getValue());
+                }
+            }
+        } else if (source.isArray() && target.isArray() && source.size() == target.size()) {
+            for (int i = 0; i < source.size(); i++) {
+                diff(path + "/" + i, source.get(i), target.get(i), patch);
+            }
+        } else {
+            patch.addObject().put("op", "replace").put("path", path).set("value", target);
+        }
+    }
+
+    static JsonNode apply(JsonNode document, JsonNode patch) {
+        var result = document.deepCopy();
+        for (JsonNode operation : patch) {
+            var op = operation.get("op").asString();
+            var path = operation.get("path").asString();
+            var value = operation.get("value");
+            if (path.isEmpty()) {
+                if (!op.equals("replace")) {
+                    throw new IllegalArgumentException("unsupported operation on the document root: " + op);
+                }
+                result = value.deepCopy();
+                continue;
+            }
+            var separator = path.lastIndexOf('/');
+            var parent = result.at(path.substring(0, separator));
+            var name = unescape(path.substring(separator + 1));
+            switch (parent) {
+                case ObjectNode object -> {
+                    switch (op) {
+                        case "add", "replace" -> object.set(name, value.deepCopy());
+                        case "remove" -> object.remove(name);
+                        default -> throw new IllegalArgumentException("unsupported operation: " + op);
+                    }
+                }
+                case ArrayNode array -> {
+                    switch (op) {
+                        case "add" -> {
+                            if (name.equals("-")) {
+                                array.add(value.deepCopy());
+                            } else {
+                                array.insert(Integer.parseInt(name), value.deepCopy());
+                            }
+                        }
+                        case "replace" -> array.set(Integer.parseInt(name), value.deepCopy());
+                        case "remove" -> array.remove(Integer.parseInt(name));
+                        default -> throw new IllegalArgumentException("unsupported operation: " + op);
+                    }
+                }
+                default -> throw new IllegalArgumentException("path not found: " + path);
+            }
+        }
+        return result;
+    }
+
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static String unescape(String name) {
+        return name.replace("~1", "/").replace("~0", "~");
     }
 }
 
+// `post_logs` is partitioned by month on `created_at`, the partitions of the coming months are created ahead, and
+// the partitions older than the retention are dropped, or detached to be archived, eg. by `pg_dump -t`.
+@Component
+@Slf4j
+class PostLogPartitionManager implements SmartLifecycle {
+
+    enum RetentionAction {
+        DROP, DETACH
+    }
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("post_logs_y(\\d{4})m(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = 'post_logs'
+            """;
+
+    private static final String DEFAULT_MONTHS_SQL = "SELECT DISTINCT to_char(created_at, 'YYYY-MM') AS month FROM post_logs_default";
+
+    private static final String MOVE_DEFAULT_ROWS_SQL = """
+            WITH moved AS (
+                DELETE FROM post_logs_default
+                WHERE created_at >= :from AND created_at < :to
+                RETURNING id, entity_id, entity_type, entity_version, kind, snapshot, created_by, created_at, version
+            )
+            INSERT INTO post_logs (id, entity_id, entity_type, entity_version, kind, snapshot, created_by, created_at, version)
+            SELECT id, entity_id, entity_type, entity_version, kind, snapshot, created_by, created_at, version FROM moved
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final int premadeMonths;
+    private final int retentionMonths;
+    private final RetentionAction retentionAction;
+    private final Duration checkInterval;
+
+    private volatile boolean running;
+    private Disposable checks;
+
+    PostLogPartitionManager(DatabaseClient databaseClient,
+                            ReactiveTransactionManager transactionManager,
+                            @Value("${audit.partitions.premade-months:3}") int premadeMonths,
+                            @Value("${audit.partitions.retention-months:12}") int retentionMonths,
+                            @Value("${audit.partitions.retention-action:DROP}") RetentionAction retentionAction,
+                            @Value("${audit.partitions.check-interval:PT12H}") Duration checkInterval) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.premadeMonths = premadeMonths;
+        this.retentionMonths = retentionMonths;
+        this.retentionAction = retentionAction;
+        this.checkInterval = checkInterval;
+    }
+
+    Mono<Void> maintain(YearMonth current) {
+        return createPartitions(current).then(applyRetention(current));
+    }
+
+    // the rows of a month without partition are kept in `post_logs_default`, a partition is also created for the months
+    // found there, so the rows are moved into it and are covered by the retention.
+    private Mono<Void> createPartitions(YearMonth current) {
+        var existing = partitions().map(Partition::month).collect(Collectors.toSet());
+        var defaulted = this.databaseClient.sql(DEFAULT_MONTHS_SQL)
+                .map(row -> YearMonth.parse(row.get("month", String.class)))
+                .all()
+                .collect(Collectors.toSet());
+        return Mono.zip(existing, defaulted)
+                .flatMapMany(months -> Flux.range(0, this.premadeMonths + 1)
+                        .map(current::plusMonths)
+                        .concatWith(Flux.fromIterable(months.getT2()).sort())
+                        .distinct()
+                        .filter(month -> !months.getT1().contains(month))
+                        .concatMap(month -> createPartition(month, months.getT2().contains(month))
+                                .onErrorResume(e -> {
+                                    log.error("[PostLogPartitionManager] failed to create the partition of {}", month, e);
+                                    return Mono.empty();
+                                })))
+                .then();
+    }
+
+    // a partition overlapping the rows of the default partition can not be created, the default partition is detached
+    // while the rows are moved, in one transaction, the inserts into `post_logs` wait for it.
+    private Mono<Void> createPartition(YearMonth month, boolean moveDefaultRows) {
+        var from = month.atDay(1).atStartOfDay();
+        var to = month.plusMonths(1).atDay(1).atStartOfDay();
+        var create = this.databaseClient
+                .sql("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF post_logs"
+                        + " FOR VALUES FROM ('" + from.toLocalDate() + "') TO ('" + to.toLocalDate() + "')")
+                .then();
+        if (!moveDefaultRows) {
+            return create;
+        }
+        return this.databaseClient.sql("ALTER TABLE post_logs DETACH PARTITION post_logs_default").then()
+                .then(create)
+                .then(this.databaseClient.sql(MOVE_DEFAULT_ROWS_SQL)
+                        .bind("from", from)
+                        .bind("to", to)
+                        .fetch()
+                        .rowsUpdated())
+                .flatMap(moved -> this.databaseClient.sql("ALTER TABLE post_logs ATTACH PARTITION post_logs_default DEFAULT")
+                        .then()
+                        .thenReturn(moved))
+                .doOnNext(moved -> log.info("[PostLogPartitionManager] moved {} logs of {} from the default partition", moved, month))
+                .as(this.transactionalOperator::transactional)
+                .then();
+    }
+
+    private Mono<Void> applyRetention(YearMonth current) {
+        var oldest = current.minusMonths(this.retentionMonths);
+        return partitions()
+                .filter(partition -> partition.month().isBefore(oldest))
+                .concatMap(partition -> {
+                    var sql = this.retentionAction == RetentionAction.DROP
+                            ? "DROP TABLE IF EXISTS " + partition.name()
+                            : "ALTER TABLE post_logs DETACH PARTITION " + partition.name();
+                    log.info("[PostLogPartitionManager] {} the partition {}", this.retentionAction, partition.name());
+                    return this.databaseClient.sql(sql).then();
+                })
+                .then();
+    }
+
+    Flux<Partition> partitions() {
+        return this.databaseClient.sql(PARTITIONS_SQL)
+                .map(row -> row.get("relname", String.class))
+                .all()
+                .mapNotNull(name -> {
+                    var matcher = PARTITION_NAME.matcher(name);
+                    return matcher.matches()
+                            ? new Partition(name, YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))))
+                            : null;
+                })
+                .sort(Comparator.comparing(Partition::month));
+    }
+
+    static String partitionName(YearMonth month) {
+        return "post_logs_" + month.format(PARTITION_SUFFIX);
+    }
+
+    // the partitions are created before the audit writers are started.
+    @Override
+    public void start() {
+        maintain(YearMonth.now()).block(Duration.ofSeconds(30));
+        this.checks = Flux.interval(this.checkInterval, this.checkInterval)
+                .onBackpressureDrop()
+                .concatMap(_ -> maintain(YearMonth.now())
+                        .onErrorResume(e -> {
+                            log.error("[PostLogPartitionManager] failed to maintain the partitions", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+        this.running = true;
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+        this.checks.dispose();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    record Partition(String name, YearMonth month) {
+    }
+}
 
 interface PostLogRepository extends R2dbcRepository<PostLog, UUID> {
 
+    @Query("SELECT * FROM post_logs WHERE entity_id = :entityId AND created_at >= :from AND created_at < :to ORDER BY created_at")
+    Flux<PostLog> findByEntityIdBetween(UUID entityId, LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT * FROM post_logs WHERE created_at >= :from AND created_at < :to ORDER BY created_at")
+    Flux<PostLog> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to);
+
+    // the latest base not newer than the version, and the deltas after it, in the version order.
+    // a chain is in the month of its base, the deltas are read from the month of the base only, never from a stale chain.
+    @Query("""
+            WITH base AS (
+                SELECT entity_version, created_at FROM post_logs
+                WHERE entity_id = :entityId AND kind = 'BASE' AND entity_version <= :version
+                ORDER BY entity_version DESC
+                LIMIT 1
+            )
+            SELECT l.* FROM post_logs l, base
+            WHERE l.entity_id = :entityId AND l.entity_version >= base.entity_version AND l.entity_version <= :version
+            AND l.created_at >= base.created_at
+            AND l.created_at < date_trunc('month', base.created_at) + interval '1 month'
+            ORDER BY l.entity_version
+            """)
+    Flux<PostLog> findSnapshotChain(UUID entityId, long version);
 }
 
 @Table("post_logs")
@@ -282,6 +1398,12 @@ record PostLog(
         @Column("entity_type")
         String entityType,
 
+        @Column("entity_version")
+        Long entityVersion,
+
+        @Column("kind")
+        Kind kind,
+
         @Column("snapshot")
         Json snapshot,
 
@@ -296,7 +1418,11 @@ record PostLog(
         @Version
         Long version
 ) {
-    static PostLog of(UUID entityId, String entityType, Json json) {
-        return new PostLog(null, entityId, entityType, json, null, null, null);
+    enum Kind {
+        BASE, DELTA
+    }
+
+    static PostLog of(UUID entityId, String entityType, PostSnapshots.Encoded snapshot, LocalDateTime createdAt, String createdBy) {
+        return new PostLog(null, entityId, entityType, snapshot.entityVersion(), snapshot.kind(), snapshot.snapshot(), createdAt, createdBy, null);
     }
 }
@@ -13,11 +13,29 @@ CREATE TABLE IF NOT EXISTS posts (
      id UUID DEFAULT uuid_generate_v4(),
      entity_id UUID,
      entity_type VARCHAR(255),
+     entity_version BIGINT,
+     kind VARCHAR(16) default 'BASE',
      snapshot JSON default '{}',
      created_by VARCHAR(255),
-     created_at TIMESTAMP ,
+     created_at TIMESTAMP NOT NULL,
      version INTEGER
+  ) PARTITION BY RANGE (created_at);
+
+-- the monthly partitions are created by `PostLogPartitionManager`, the rows out of them are kept in the default partition
+-- until their partition is created.
+ CREATE TABLE IF NOT EXISTS post_logs_default PARTITION OF post_logs DEFAULT;
+
+ CREATE TABLE IF NOT EXISTS post_logs_outbox (
+     id BIGSERIAL PRIMARY KEY,
+     entity_id UUID,
+     entity_type VARCHAR(255),
+     entity_version BIGINT,
+     kind VARCHAR(16) default 'BASE',
+     snapshot JSON default '{}',
+     created_by VARCHAR(255),
+     created_at TIMESTAMP
   );
   
 ALTER TABLE posts ADD CONSTRAINT posts_pk PRIMARY KEY (id);
-ALTER TABLE post_logs ADD CONSTRAINT post_logs_pk PRIMARY KEY (id);
\ No newline at end of file
+ALTER TABLE post_logs ADD CONSTRAINT post_logs_pk PRIMARY KEY (id, created_at);
+CREATE INDEX IF NOT EXISTS post_logs_entity_version_idx ON post_logs (entity_id, entity_version);
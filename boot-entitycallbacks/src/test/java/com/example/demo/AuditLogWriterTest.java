@@ -0,0 +1,189 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.postgresql.codec.Json;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.FetchSpec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuditLogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Integer> insertedBatches = new CopyOnWriteArrayList<>();
+    private DatabaseClient databaseClient;
+    private PostSnapshots snapshots;
+    private FetchSpec<Map<String, Object>> fetchSpec;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.databaseClient = mock(DatabaseClient.class);
+        this.fetchSpec = mock(FetchSpec.class);
+        var spec = mock(DatabaseClient.GenericExecuteSpec.class);
+        when(this.databaseClient.sql(anyString())).thenAnswer(invocation -> {
+            // 7 parameters per inserted log.
+            String sql = invocation.getArgument(0);
+            this.insertedBatches.add((int) sql.chars().filter(c -> c == '$').count() / 7);
+            return spec;
+        });
+        when(spec.bind(anyInt(), any())).thenReturn(spec);
+        when(spec.fetch()).thenReturn(this.fetchSpec);
+        when(this.fetchSpec.rowsUpdated()).thenAnswer(_ -> Mono.just((long) this.insertedBatches.getLast()));
+        this.snapshots = mock(PostSnapshots.class);
+        this.registry = new SimpleMeterRegistry();
+    }
+
+    private AuditLogWriter writer(int queueCapacity, AuditLogWriter.OverflowPolicy overflowPolicy) {
+        var writer = new AuditLogWriter(this.databaseClient, this.snapshots, queueCapacity, 10, Duration.ofHours(1), overflowPolicy,
+                this.tempDir.resolve("post-logs.spill"), Duration.ofSeconds(5));
+        writer.bindTo(this.registry);
+        return writer;
+    }
+
+    private double count(String name) {
+        return this.registry.get(name).functionCounter().count();
+    }
+
+    private static PostLog postLog() {
+        return new PostLog(null, UUID.randomUUID(), Post.class.getName(), 1L, PostLog.Kind.BASE,
+                Json.of("{\"title\":\"test\"}"), LocalDateTime.now(), "user", null);
+    }
+
+    @Test
+    public void testOverflowIsDroppedWithoutWaiting() {
+        var writer = writer(2, AuditLogWriter.OverflowPolicy.DROP);
+        writer.start();
+
+        var droppedLog = postLog();
+        writer.write(postLog());
+        writer.write(postLog());
+        writer.write(droppedLog);
+        assertThat(count("audit.writer.dropped")).isEqualTo(1);
+        // the next save of the post writes a base, the delta chain is not broken by the dropped log.
+        verify(this.snapshots).forget(droppedLog.entityId());
+
+        writer.flush().block(Duration.ofSeconds(5));
+        assertThat(this.insertedBatches).containsExactly(2);
+        assertThat(count("audit.writer.written")).isEqualTo(2);
+
+        writer.stop();
+    }
+
+    @Test
+    public void testOverflowIsSpilledAndReplayed() throws Exception {
+        var writer = writer(1, AuditLogWriter.OverflowPolicy.SPILL);
+        var spillFile = this.tempDir.resolve("post-logs.spill");
+        writer.start();
+
+        var spilledLog = postLog();
+        writer.write(postLog());
+        writer.write(spilledLog);
+        // the log is spilled on the spill thread, not on the writing one.
+        writer.awaitSpills().block(Duration.ofSeconds(5));
+        assertThat(count("audit.writer.spilled")).isEqualTo(1);
+        assertThat(Files.readAllLines(spillFile)).singleElement().asString().startsWith(spilledLog.entityId().toString());
+
+        // the spilled logs are replayed only when the queue is empty.
+        writer.replaySpilled();
+        assertThat(spillFile).exists();
+
+        writer.flush().block(Duration.ofSeconds(5));
+        writer.replaySpilled();
+        assertThat(spillFile).doesNotExist();
+        writer.flush().block(Duration.ofSeconds(5));
+
+        assertThat(this.insertedBatches).containsExactly(1, 1);
+        assertThat(count("audit.writer.written")).isEqualTo(2);
+
+        writer.stop();
+    }
+
+    @Test
+    public void testFailedBatchIsSpilled() throws Exception {
+        doReturn(Mono.error(new IllegalStateException("connection refused"))).when(this.fetchSpec).rowsUpdated();
+        var writer = writer(10, AuditLogWriter.OverflowPolicy.SPILL);
+        writer.start();
+
+        writer.write(postLog());
+        writer.write(postLog());
+        writer.flush().block(Duration.ofSeconds(5));
+
+        assertThat(Files.readAllLines(this.tempDir.resolve("post-logs.spill"))).hasSize(2);
+        assertThat(count("audit.writer.spilled")).isEqualTo(2);
+        assertThat(count("audit.writer.failed")).isZero();
+        verify(this.snapshots, never()).forget(any());
+
+        writer.stop();
+    }
+
+    @Test
+    public void testConcurrentFlushesComplete() throws InterruptedException {
+        var writer = writer(10_000, AuditLogWriter.OverflowPolicy.DROP);
+        writer.start();
+
+        // the racing flush requests are not emitted, they are completed by the next flush.
+        var flushes = new CopyOnWriteArrayList<Mono<Void>>();
+        var threads = IntStream.range(0, 8)
+                .mapToObj(_ -> Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        writer.write(postLog());
+                        flushes.add(writer.flush());
+                    }
+                }))
+                .toList();
+        for (var thread : threads) {
+            thread.join();
+        }
+        Flux.fromIterable(flushes).flatMap(flush -> flush).then().block(Duration.ofSeconds(5));
+
+        assertThat(count("audit.writer.written")).isEqualTo(800);
+        writer.stop();
+    }
+
+    @Test
+    public void testQueueIsDrainedOnStop() {
+        var writer = writer(100, AuditLogWriter.OverflowPolicy.DROP);
+        writer.start();
+
+        for (int i = 0; i < 25; i++) {
+            writer.write(postLog());
+        }
+        writer.stop();
+
+        assertThat(writer.isRunning()).isFalse();
+        assertThat(this.insertedBatches).allMatch(size -> size <= 10);
+        assertThat(this.insertedBatches.stream().mapToInt(Integer::intValue).sum()).isEqualTo(25);
+        assertThat(count("audit.writer.written")).isEqualTo(25);
+
+        // the writes after the stop are overflowed.
+        writer.write(postLog());
+        assertThat(count("audit.writer.dropped")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EntityCallbackInstrumentationTest {
+
+    static class DelayedCallback implements AfterSaveCallback<Post> {
+        @Override
+        public Publisher<Post> onAfterSave(Post entity, OutboundRow outboundRow, SqlIdentifier table) {
+            return Mono.delay(Duration.ofMillis(50)).thenReturn(entity);
+        }
+    }
+
+    static class FailingCallback implements AfterSaveCallback<Post> {
+        @Override
+        public Publisher<Post> onAfterSave(Post entity, OutboundRow outboundRow, SqlIdentifier table) {
+            throw new IllegalStateException("failed before the publisher is returned");
+        }
+    }
+
+    private final Post post = new Post(UUID.randomUUID(), "title", "content", Post.Status.DRAFT, 0L);
+    private SimpleMeterRegistry registry;
+    private EntityCallbackInstrumentation instrumentation;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.registry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(this.registry);
+        this.instrumentation = new EntityCallbackInstrumentation(provider, 0, Duration.ofSeconds(10));
+    }
+
+    @SuppressWarnings("unchecked")
+    private AfterSaveCallback<Post> instrument(AfterSaveCallback<Post> callback) {
+        return (AfterSaveCallback<Post>) this.instrumentation.postProcessAfterInitialization(callback, "callback");
+    }
+
+    private long count(String callback, String outcome) {
+        var timer = this.registry.find(EntityCallbackInstrumentation.METRIC_NAME)
+                .tag("callback", callback)
+                .tag("outcome", outcome)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    public void testDownstreamWorkIsNotTimed() throws InterruptedException {
+        var callback = instrument(new DelayedCallback());
+
+        var saved = Mono.from(callback.onAfterSave(this.post, new OutboundRow(), SqlIdentifier.unquoted("posts")));
+        // nothing is recorded until the callback is subscribed, the time before the subscription is not counted.
+        Thread.sleep(300);
+        assertThat(count("DelayedCallback", "success")).isZero();
+
+        // neither is the work of the downstream.
+        saved
+                .doOnNext(_ -> {
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .as(StepVerifier::create)
+                .expectNext(this.post)
+                .verifyComplete();
+
+        var timer = this.registry.get(EntityCallbackInstrumentation.METRIC_NAME).tag("outcome", "success").timer();
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.max(TimeUnit.MILLISECONDS)).isBetween(50.0, 250.0);
+    }
+
+    @Test
+    public void testCancelledCallback() {
+        var callback = instrument(new DelayedCallback());
+
+        Mono.from(callback.onAfterSave(this.post, new OutboundRow(), SqlIdentifier.unquoted("posts")))
+                .as(StepVerifier::create)
+                .thenCancel()
+                .verify();
+
+        assertThat(count("DelayedCallback", "cancelled")).isEqualTo(1);
+        assertThat(count("DelayedCallback", "success")).isZero();
+    }
+
+    @Test
+    public void testFailingCallbackIsRecordedOnSubscribe() {
+        var callback = instrument(new FailingCallback());
+
+        var saved = Mono.from(callback.onAfterSave(this.post, new OutboundRow(), SqlIdentifier.unquoted("posts")));
+        assertThat(count("FailingCallback", "error")).isZero();
+
+        saved.as(StepVerifier::create)
+                .verifyError(IllegalStateException.class);
+        assertThat(count("FailingCallback", "error")).isEqualTo(1);
+    }
+}
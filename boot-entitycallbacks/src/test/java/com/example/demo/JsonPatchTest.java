@@ -0,0 +1,99 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonPatchTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private JsonNode json(String json) {
+        return this.jsonMapper.readTree(json.replace('\'', '"'));
+    }
+
+    private void assertRoundTrip(JsonNode source, JsonNode target) {
+        assertThat(JsonPatch.apply(source, JsonPatch.diff(source, target))).isEqualTo(target);
+    }
+
+    @Test
+    public void testDiffOfProperties() {
+        var source = json("{'title': 'a', 'content': 'c', 'status': 'DRAFT'}");
+        var target = json("{'title': 'b', 'status': 'DRAFT', 'version': 1}");
+
+        assertThat(JsonPatch.diff(source, target)).isEqualTo(json("""
+                [
+                  {'op': 'remove', 'path': '/content'},
+                  {'op': 'replace', 'path': '/title', 'value': 'b'},
+                  {'op': 'add', 'path': '/version', 'value': 1}
+                ]
+                """));
+        assertRoundTrip(source, target);
+        assertThat(JsonPatch.diff(source, source)).isEmpty();
+    }
+
+    @Test
+    public void testDiffOfArrays() {
+        var source = json("{'tags': ['a', 'b', {'name': 'c'}]}");
+
+        // an array of the same size is diffed by the index.
+        var sameSize = json("{'tags': ['a', 'x', {'name': 'y'}]}");
+        assertThat(JsonPatch.diff(source, sameSize)).isEqualTo(json("""
+                [
+                  {'op': 'replace', 'path': '/tags/1', 'value': 'x'},
+                  {'op': 'replace', 'path': '/tags/2/name', 'value': 'y'}
+                ]
+                """));
+        assertRoundTrip(source, sameSize);
+
+        // an array of another size is replaced.
+        var shorter = json("{'tags': ['a']}");
+        assertThat(JsonPatch.diff(source, shorter)).isEqualTo(json("[{'op': 'replace', 'path': '/tags', 'value': ['a']}]"));
+        assertRoundTrip(source, shorter);
+        assertRoundTrip(shorter, source);
+    }
+
+    @Test
+    public void testApplyToArrays() {
+        var document = json("{'tags': ['a', 'b', 'c']}");
+        var patch = json("""
+                [
+                  {'op': 'remove', 'path': '/tags/0'},
+                  {'op': 'add', 'path': '/tags/1', 'value': 'x'},
+                  {'op': 'add', 'path': '/tags/-', 'value': 'z'},
+                  {'op': 'replace', 'path': '/tags/0', 'value': 'y'}
+                ]
+                """);
+
+        assertThat(JsonPatch.apply(document, patch)).isEqualTo(json("{'tags': ['y', 'x', 'c', 'z']}"));
+        // the document is not modified.
+        assertThat(document).isEqualTo(json("{'tags': ['a', 'b', 'c']}"));
+    }
+
+    @Test
+    public void testEscapedPaths() {
+        var source = json("{'a/b': 1, 'm~n': {'~1': 2}, 'removed/~': 3}");
+        var target = json("{'a/b': 10, 'm~n': {'~1': 20}}");
+
+        assertThat(JsonPatch.diff(source, target)).isEqualTo(json("""
+                [
+                  {'op': 'remove', 'path': '/removed~1~0'},
+                  {'op': 'replace', 'path': '/a~1b', 'value': 10},
+                  {'op': 'replace', 'path': '/m~0n/~01', 'value': 20}
+                ]
+                """));
+        assertRoundTrip(source, target);
+    }
+
+    @Test
+    public void testApplyToMissingPath() {
+        var patch = json("[{'op': 'replace', 'path': '/missing/title', 'value': 'a'}]");
+
+        assertThatThrownBy(() -> JsonPatch.apply(json("{'title': 'a'}"), patch))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("/missing/title");
+    }
+}
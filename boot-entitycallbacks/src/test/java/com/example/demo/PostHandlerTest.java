@@ -0,0 +1,155 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+public class PostHandlerTest {
+
+    private final UUID id = UUID.randomUUID();
+    private PostRepository posts;
+    private PostSnapshots snapshots;
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setup() {
+        this.posts = mock(PostRepository.class);
+        var post = new Post(this.id, "test", "content", Post.Status.DRAFT, 1L);
+        when(this.posts.findById(any(UUID.class))).thenAnswer(invocation -> this.id.equals(invocation.getArgument(0)) ? Mono.just(post) : Mono.empty());
+        when(this.posts.findVersionById(any(UUID.class))).thenAnswer(invocation -> this.id.equals(invocation.getArgument(0)) ? Mono.just(1L) : Mono.empty());
+        when(this.posts.save(any(Post.class))).thenAnswer(invocation -> {
+            Post saved = invocation.getArgument(0);
+            return Mono.just(new Post(saved.id(), saved.title(), saved.content(), saved.status(), saved.version() + 1));
+        });
+        this.snapshots = mock(PostSnapshots.class);
+        var handler = new PostHandler(this.posts, this.snapshots);
+        this.client = WebTestClient
+                .bindToRouterFunction(route()
+                        .GET("/posts/{id}", handler::get)
+                        .PUT("/posts/{id}", handler::update)
+                        .GET("/posts/{id}/versions/{version}", handler::getVersion)
+                        .build())
+                .build();
+    }
+
+    @Test
+    public void testGetWithETag() {
+        this.client.get().uri("/posts/{id}", this.id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody().jsonPath("$.title").isEqualTo("test");
+
+        this.client.get().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // the post is read without `If-None-Match` only, the 304 is answered from the version.
+        verify(this.posts, times(1)).findById(this.id);
+        verify(this.posts, times(1)).findVersionById(this.id);
+    }
+
+    @Test
+    public void testGetIfNoneMatchModified() {
+        this.client.get().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody().jsonPath("$.title").isEqualTo("test");
+
+        this.client.get().uri("/posts/{id}", UUID.randomUUID())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testUpdateIfMatch() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_MATCH, "\"0\", \"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "updated"))
+                .exchange()
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"");
+    }
+
+    @Test
+    public void testUpdateIfMatchFailed() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_MATCH, "\"2\", \"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "updated"))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        verify(this.posts, times(1)).findById(this.id);
+        verify(this.posts, never()).save(any(Post.class));
+    }
+
+    @Test
+    public void testUpdateWithoutBody() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(this.posts, never()).save(any(Post.class));
+    }
+
+    @Test
+    public void testUpdateWithEmptyBody() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(this.posts, never()).save(any(Post.class));
+    }
+
+    @Test
+    public void testUpdateNotFound() {
+        this.client.put().uri("/posts/{id}", UUID.randomUUID())
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "updated"))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testGetVersionNotNumeric() {
+        this.client.get().uri("/posts/{id}/versions/{version}", this.id, "latest")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(this.snapshots, never()).reconstruct(any(UUID.class), anyLong());
+    }
+
+    @Test
+    public void testGetVersionOfBrokenChain() {
+        when(this.snapshots.reconstruct(this.id, 3L)).thenReturn(Mono.error(new PostSnapshots.BrokenChainException("the snapshot of version 2 is missing")));
+
+        this.client.get().uri("/posts/{id}/versions/{version}", this.id, 3)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+public class PostLogHandlerTest {
+
+    private PostLogRepository logs;
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setup() {
+        this.logs = mock(PostLogRepository.class);
+        when(this.logs.findByCreatedAtBetween(any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(Flux.empty());
+        when(this.logs.findByEntityIdBetween(any(UUID.class), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(Flux.empty());
+        var handler = new PostLogHandler(this.logs);
+        this.client = WebTestClient
+                .bindToRouterFunction(route().GET("/logs", handler::all).build())
+                .build();
+    }
+
+    @Test
+    public void testGetLogsBetween() {
+        var entityId = UUID.randomUUID();
+        this.client.get().uri("/logs?entityId={entityId}&from=2026-10-01T00:00&to=2026-11-01T00:00", entityId)
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(this.logs).findByEntityIdBetween(entityId, LocalDateTime.parse("2026-10-01T00:00"), LocalDateTime.parse("2026-11-01T00:00"));
+    }
+
+    @Test
+    public void testGetLogsOfMalformedRange() {
+        this.client.get().uri("/logs?from=2026-10-01")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        this.client.get().uri("/logs?to=yesterday")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        this.client.get().uri("/logs?entityId=1")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(this.logs);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.data.r2dbc.test.autoconfigure.DataR2dbcTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+// the relay is slowed down, so the outbox rows are asserted before they are moved to `post_logs`.
+@DataR2dbcTest(properties = {"audit.mode=outbox", "audit.outbox.relay-interval=PT1H"})
+@Import({TestcontainersConfiguration.class, DataR2dbcConfig.class, PostCallback.class, PgJsonObjectJsonComponent.class, LogEventListener.class, AuditLogWriter.class, PostLogOutbox.class, PostSnapshots.class, EntityCallbackInstrumentation.class, SimpleMeterRegistry.class})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, PropertyPlaceholderAutoConfiguration.class})
+public class PostLogOutboxTest {
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    @Autowired
+    PostRepository posts;
+
+    @Autowired
+    PostLogOutbox outbox;
+
+    @Autowired
+    ReactiveTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setup() {
+        this.databaseClient.sql("DELETE FROM post_logs_outbox").then()
+                .then(this.databaseClient.sql("DELETE FROM post_logs").then())
+                .then(this.databaseClient.sql("DELETE FROM posts").then())
+                .block(Duration.ofSeconds(5));
+    }
+
+    private Mono<Long> count(String table) {
+        return this.databaseClient.sql("SELECT count(*) AS count FROM " + table)
+                .map(row -> row.get("count", Long.class))
+                .one();
+    }
+
+    @Test
+    public void testSaveAppendsToOutbox() {
+        var operator = TransactionalOperator.create(this.transactionManager);
+        this.posts.save(Post.of("outbox", "content"))
+                .as(operator::transactional)
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        count("post_logs_outbox").as(StepVerifier::create).expectNext(1L).verifyComplete();
+        count("post_logs").as(StepVerifier::create).expectNext(0L).verifyComplete();
+
+        this.outbox.relay().as(StepVerifier::create).expectNext(1L).verifyComplete();
+        count("post_logs_outbox").as(StepVerifier::create).expectNext(0L).verifyComplete();
+        count("post_logs").as(StepVerifier::create).expectNext(1L).verifyComplete();
+    }
+
+    @Test
+    public void testFailedSaveLeavesNoOutboxRow() {
+        var operator = TransactionalOperator.create(this.transactionManager);
+        this.posts.save(Post.of("outbox", "content"))
+                .then(Mono.error(new IllegalStateException("failed after the save")))
+                .as(operator::transactional)
+                .as(StepVerifier::create)
+                .verifyError(IllegalStateException.class);
+
+        count("posts").as(StepVerifier::create).expectNext(0L).verifyComplete();
+        count("post_logs_outbox").as(StepVerifier::create).expectNext(0L).verifyComplete();
+
+        this.outbox.relay().as(StepVerifier::create).expectNext(0L).verifyComplete();
+        count("post_logs").as(StepVerifier::create).expectNext(0L).verifyComplete();
+    }
+}
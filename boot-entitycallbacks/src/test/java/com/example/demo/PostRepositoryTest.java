@@ -1,25 +1,36 @@
 package com.example.demo;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.postgresql.codec.Json;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
 import org.springframework.boot.data.r2dbc.test.autoconfigure.DataR2dbcTest;
 import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @DataR2dbcTest()
-@Import({TestcontainersConfiguration.class, DataR2dbcConfig.class, PostCallback.class, PgJsonObjectJsonComponent.class, LogEventListener.class})
-@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({TestcontainersConfiguration.class, DataR2dbcConfig.class, PostCallback.class, PgJsonObjectJsonComponent.class, LogEventListener.class, AuditLogWriter.class, PostLogOutbox.class, PostSnapshots.class, EntityCallbackInstrumentation.class, SimpleMeterRegistry.class, PostLogPartitionManager.class})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, PropertyPlaceholderAutoConfiguration.class})
 @Slf4j
 public class PostRepositoryTest {
 
@@ -29,9 +40,28 @@ public class PostRepositoryTest {
     @Autowired
     PostRepository posts;
 
+    @Autowired
+    AuditLogWriter auditLogWriter;
+
+    @Autowired
+    PostLogOutbox outbox;
+
+    @Autowired
+    PostSnapshots snapshots;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    PostLogPartitionManager partitionManager;
+
+    @Autowired
+    PostLogRepository logs;
+
     @BeforeEach
     public void setup() {
         this.template.delete(Post.class).all().block(Duration.ofSeconds(5));
+        this.template.delete(PostLog.class).all().block(Duration.ofSeconds(5));
     }
 
     @Test
@@ -60,11 +90,180 @@ public class PostRepositoryTest {
                 )
                 .verifyComplete();
 
-        this.template.select(PostLog.class)
-                .all()
+        this.auditLogWriter.flush()
+                .thenMany(this.template.select(PostLog.class).all())
                 .as(StepVerifier::create)
                 .expectNextCount(1)
                 .verifyComplete();
 
     }
+
+    @Test
+    public void testAuditLogsAreBatched() {
+        var data = Flux.range(1, 500).map(i -> Post.of("title #" + i, "content of #" + i));
+        this.posts.saveAll(data)
+                .then(this.auditLogWriter.flush())
+                .then(this.template.select(PostLog.class).count())
+                .as(StepVerifier::create)
+                .expectNext(500L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testRelayOutbox() {
+        var logs = Flux.range(1, 3)
+                .map(i -> PostLog.of(UUID.randomUUID(), Post.class.getName(), new PostSnapshots.Encoded(0L, PostLog.Kind.BASE, Json.of("{}")), LocalDateTime.now(), "test"));
+        logs.concatMap(this.outbox::append)
+                .then(this.outbox.relay())
+                .as(StepVerifier::create)
+                .expectNext(3L)
+                .verifyComplete();
+
+        this.outbox.relay()
+                .as(StepVerifier::create)
+                .expectNext(0L)
+                .verifyComplete();
+
+        this.template.select(PostLog.class).count()
+                .as(StepVerifier::create)
+                .expectNext(3L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testReconstructVersions() {
+        var saved = this.posts.save(Post.of("title v0", "content"))
+                .expand(p -> p.version() < 12
+                        ? this.posts.save(new Post(p.id(), "title v" + (p.version() + 1), p.content(), p.status(), p.version()))
+                        : Mono.empty())
+                .last()
+                .block(Duration.ofSeconds(10));
+        this.auditLogWriter.flush().block(Duration.ofSeconds(5));
+
+        this.template.select(PostLog.class).all()
+                .filter(l -> l.kind() == PostLog.Kind.BASE)
+                .map(PostLog::entityVersion)
+                .sort()
+                .as(StepVerifier::create)
+                .expectNext(0L, 10L)
+                .verifyComplete();
+
+        this.snapshots.reconstruct(saved.id(), 7)
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> {
+                    assertThat(p.title()).isEqualTo("title v7");
+                    assertThat(p.version()).isEqualTo(7L);
+                })
+                .verifyComplete();
+
+        this.snapshots.reconstruct(saved.id(), 13)
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testEntityCallbacksAreTimed() {
+        var afterSaveCount = callbackCount("AfterSave");
+        var afterConvertCount = callbackCount("AfterConvert");
+        this.posts.save(Post.of("test title", "content of test"))
+                .thenMany(this.posts.findAll())
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(callbackCount("AfterSave")).isEqualTo(afterSaveCount + 1);
+        assertThat(callbackCount("AfterConvert")).isEqualTo(afterConvertCount + 1);
+    }
+
+    @Test
+    public void testMaintainPartitions() {
+        var current = YearMonth.now();
+        this.partitionManager.maintain(current.minusMonths(20))
+                .then(this.partitionManager.maintain(current))
+                .thenMany(this.partitionManager.partitions())
+                .map(PostLogPartitionManager.Partition::month)
+                .as(StepVerifier::create)
+                .expectNext(current, current.plusMonths(1), current.plusMonths(2), current.plusMonths(3))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testMaintainPartitionsMovesDefaultRows() {
+        var current = YearMonth.now();
+        var entityId = UUID.randomUUID();
+        // the log of 20 months ago is kept in the default partition, its partition is created and dropped by the retention.
+        var logs = Flux.just(current.minusMonths(20).atDay(1).atTime(12, 0), LocalDateTime.now())
+                .map(createdAt -> PostLog.of(entityId, Post.class.getName(), new PostSnapshots.Encoded(0L, PostLog.Kind.BASE, Json.of("{}")), createdAt, "test"));
+        logs.concatMap(this.outbox::append)
+                .then(this.outbox.relay())
+                .then(this.partitionManager.maintain(current))
+                .thenMany(this.partitionManager.partitions())
+                .map(PostLogPartitionManager.Partition::month)
+                .as(StepVerifier::create)
+                .expectNext(current, current.plusMonths(1), current.plusMonths(2), current.plusMonths(3))
+                .verifyComplete();
+
+        this.template.getDatabaseClient().sql("SELECT count(*) AS count FROM post_logs_default")
+                .map(row -> row.get("count", Long.class))
+                .one()
+                .as(StepVerifier::create)
+                .expectNext(0L)
+                .verifyComplete();
+
+        this.logs.findByEntityIdBetween(entityId, current.minusMonths(24).atDay(1).atStartOfDay(), LocalDateTime.now().plusSeconds(1))
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testReconstructAfterRetention() {
+        var current = YearMonth.now();
+        var entityId = UUID.randomUUID();
+        // versions 0 and 1 are in the partition of 13 months ago, versions 2 and 3 in the one of last month.
+        var createdAts = List.of(current.minusMonths(13).atDay(1).atTime(12, 0), current.minusMonths(13).atDay(2).atTime(12, 0),
+                current.minusMonths(1).atDay(1).atTime(12, 0), current.minusMonths(1).atDay(2).atTime(12, 0));
+        var logs = Flux.range(0, createdAts.size())
+                .map(version -> {
+                    var post = new Post(entityId, "title v" + version, "content", Post.Status.DRAFT, (long) version);
+                    return PostLog.of(entityId, Post.class.getName(), this.snapshots.encode(post, createdAts.get(version)), createdAts.get(version), "test");
+                });
+        logs.concatMap(this.outbox::append)
+                .then(this.outbox.relay())
+                .then(this.partitionManager.maintain(current))
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        // the partition of the versions 0 and 1 is dropped, version 2 is a base, not a delta of version 1.
+        this.snapshots.reconstruct(entityId, 3)
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> assertThat(p.title()).isEqualTo("title v3"))
+                .verifyComplete();
+
+        this.snapshots.reconstruct(entityId, 1)
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFindByEntityIdBetween() {
+        var entityId = UUID.randomUUID();
+        var now = LocalDateTime.now();
+        var logs = Flux.just(now.minusMonths(2), now.minusDays(1), now)
+                .map(createdAt -> PostLog.of(entityId, Post.class.getName(), new PostSnapshots.Encoded(0L, PostLog.Kind.BASE, Json.of("{}")), createdAt, "test"));
+        logs.concatMap(this.outbox::append)
+                .then(this.outbox.relay())
+                .thenMany(this.logs.findByEntityIdBetween(entityId, now.minusDays(7), now.plusSeconds(1)))
+                .as(StepVerifier::create)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    private long callbackCount(String type) {
+        return this.meterRegistry.find(EntityCallbackInstrumentation.METRIC_NAME)
+                .tags("callback", "PostCallback", "type", type, "outcome", "success")
+                .timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
 }
@@ -0,0 +1,99 @@
+package com.example.demo;
+
+import io.r2dbc.postgresql.codec.Json;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PostSnapshotsTest {
+
+    private final UUID id = UUID.randomUUID();
+    private final LocalDateTime now = LocalDateTime.of(2026, 10, 18, 12, 0);
+    private PostLogRepository logs;
+    private PostSnapshots snapshots;
+
+    @BeforeEach
+    public void setup() {
+        this.logs = mock(PostLogRepository.class);
+        this.snapshots = new PostSnapshots(JsonMapper.builder().build(), this.logs, 10, 100);
+    }
+
+    private Post post(long version) {
+        return new Post(this.id, "title v" + version, "content", Post.Status.DRAFT, version);
+    }
+
+    private PostSnapshots.Encoded encode(Post post) {
+        return this.snapshots.encode(post, this.now);
+    }
+
+    private PostLog postLog(PostSnapshots.Encoded encoded) {
+        return PostLog.of(this.id, Post.class.getName(), encoded, this.now, "test");
+    }
+
+    @Test
+    public void testNextVersionIsBaseAfterForget() {
+        assertThat(encode(post(0)).kind()).isEqualTo(PostLog.Kind.BASE);
+        assertThat(encode(post(1)).kind()).isEqualTo(PostLog.Kind.DELTA);
+
+        // the log of version 2 is lost.
+        encode(post(2));
+        this.snapshots.forget(this.id);
+
+        assertThat(encode(post(3)).kind()).isEqualTo(PostLog.Kind.BASE);
+        assertThat(encode(post(4)).kind()).isEqualTo(PostLog.Kind.DELTA);
+    }
+
+    @Test
+    public void testNextVersionIsBaseInNewMonth() {
+        var endOfMonth = LocalDateTime.of(2026, 10, 31, 23, 59, 59);
+        assertThat(this.snapshots.encode(post(0), endOfMonth).kind()).isEqualTo(PostLog.Kind.BASE);
+        assertThat(this.snapshots.encode(post(1), endOfMonth).kind()).isEqualTo(PostLog.Kind.DELTA);
+
+        // the first log of the post in the partition of November does not depend on the partition of October.
+        var nextMonth = endOfMonth.plusSeconds(1);
+        assertThat(this.snapshots.encode(post(2), nextMonth).kind()).isEqualTo(PostLog.Kind.BASE);
+        assertThat(this.snapshots.encode(post(3), nextMonth).kind()).isEqualTo(PostLog.Kind.DELTA);
+    }
+
+    @Test
+    public void testReconstruct() {
+        var chain = Flux.just(encode(post(0)), encode(post(1)), encode(post(2)))
+                .map(this::postLog);
+        when(this.logs.findSnapshotChain(this.id, 2)).thenReturn(chain);
+
+        this.snapshots.reconstruct(this.id, 2)
+                .as(StepVerifier::create)
+                .expectNext(post(2))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testReconstructBrokenChain() {
+        var base = encode(post(0));
+        encode(post(1));
+        var delta = encode(post(2));
+        when(this.logs.findSnapshotChain(this.id, 2)).thenReturn(Flux.just(postLog(base), postLog(delta)));
+
+        this.snapshots.reconstruct(this.id, 2)
+                .as(StepVerifier::create)
+                .verifyError(PostSnapshots.BrokenChainException.class);
+    }
+
+    @Test
+    public void testReconstructUnknownVersion() {
+        when(this.logs.findSnapshotChain(this.id, 5)).thenReturn(Flux.just(postLog(new PostSnapshots.Encoded(0L, PostLog.Kind.BASE, Json.of("{}")))));
+
+        this.snapshots.reconstruct(this.id, 5)
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo;
 
 import com.example.demo.jooq.tables.records.PostsTagsRecord;
+import com.example.r2dbc.support.PostSearchQueries;
 import io.r2dbc.spi.ConnectionFactory;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +11,7 @@ import org.jooq.Record1;
 import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
 import org.jooq.impl.SQLDataType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -22,9 +24,12 @@ import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.http.MediaType;
 import org.springframework.r2dbc.connection.TransactionAwareConnectionFactoryProxy;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
@@ -41,7 +46,9 @@ import java.util.UUID;
 import static com.example.demo.jooq.Tables.*;
 import static org.jooq.impl.DSL.multiset;
 import static org.jooq.impl.DSL.select;
+import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+import static org.springframework.web.reactive.function.server.ServerResponse.badRequest;
 import static org.springframework.web.reactive.function.server.ServerResponse.created;
 import static org.springframework.web.reactive.function.server.ServerResponse.ok;
 
@@ -112,7 +119,10 @@ class WebConfig {
     @Bean
     RouterFunction<ServerResponse> routerFunction(PostHandler handler) {
         return route()
+                .GET("/posts", accept(MediaType.APPLICATION_NDJSON), handler::stream)
+                .GET("/posts", accept(MediaType.TEXT_EVENT_STREAM), handler::events)
                 .GET("/posts", handler::getAll)
+                .GET("/posts/search", handler::search)
                 .POST("/posts", handler::create)
                 .build();
     }
@@ -122,12 +132,38 @@ class WebConfig {
 @Component
 @RequiredArgsConstructor
 class PostHandler {
+    static final int DEFAULT_SEARCH_LIMIT = 10;
+    static final int MAX_SEARCH_LIMIT = 100;
+
     private final PostService postService;
 
+    @Value("${streaming.flush-size:100}")
+    private int flushSize;
+
     public Mono<ServerResponse> getAll(ServerRequest req) {
         return ok().body(this.postService.findAll(), PostSummary.class);
     }
 
+    // streams the posts with `Accept: application/x-ndjson`, the Jackson encoder writes and flushes every post
+    // when it arrives, the rows are requested from the database `flushSize` at a time as the client reads them.
+    public Mono<ServerResponse> stream(ServerRequest req) {
+        return ok().contentType(MediaType.APPLICATION_NDJSON).body(this.postService.findAll().limitRate(this.flushSize), PostSummary.class);
+    }
+
+    public Mono<ServerResponse> events(ServerRequest req) {
+        return ok().contentType(MediaType.TEXT_EVENT_STREAM).body(this.postService.findAll().limitRate(this.flushSize), PostSummary.class);
+    }
+
+    // eg. `/posts/search?q=reac&limit=20`, the limit is capped by `MAX_SEARCH_LIMIT`.
+    public Mono<ServerResponse> search(ServerRequest req) {
+        var q = req.queryParam("q").orElse("");
+        var limit = req.queryParam("limit").orElse(String.valueOf(DEFAULT_SEARCH_LIMIT));
+        if (!limit.matches("\\d{1,9}") || Integer.parseInt(limit) == 0) {
+            return badRequest().build();
+        }
+        return ok().body(this.postService.search(q, Math.min(Integer.parseInt(limit), MAX_SEARCH_LIMIT)), SearchResult.class);
+    }
+
     public Mono<ServerResponse> create(ServerRequest req) {
         return req.bodyToMono(CreatePostCommand.class)
                 .flatMap(this.postService::create)
@@ -142,6 +178,7 @@ class PostHandler {
 @Slf4j
 class PostService {
     private final DSLContext dslContext;
+    private final DatabaseClient databaseClient;
 
     public Flux<PostSummary> findAll() {
         var p = POSTS;
@@ -206,6 +243,27 @@ class PostService {
                 .map(it -> new PaginatedResult(it.getT1(), it.getT2()));
     }
 
+    // ranked full-text search on the generated `search_vector` column, it is not a part of the jOOQ
+    // generated model (see schema.sql), so the shared `PostSearchQueries.SEARCH` is run by the `DatabaseClient`.
+    public Flux<SearchResult> search(String query, int limit) {
+        Assert.isTrue(limit > 0, "limit should be greater than 0");
+        var tsQuery = PostSearchQueries.prefixTsQuery(query);
+        if (tsQuery.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql(PostSearchQueries.SEARCH)
+                .bind("tsQuery", tsQuery)
+                .bind("keyword", query.trim())
+                .bind("limit", limit)
+                .map((row, _) -> new SearchResult(
+                        row.get("id", UUID.class),
+                        row.get("title", String.class),
+                        row.get("snippet", String.class),
+                        row.get("rank", Float.class)
+                ))
+                .all();
+    }
+
     public Mono<UUID> create(CreatePostCommand data) {
         var p = POSTS;
         var pt = POSTS_TAGS;
@@ -244,6 +302,9 @@ record PostSummary(UUID id, String title, Long countOfComments, List<String> tag
 record PaginatedResult(List<?> data, Long count) {
 }
 
+record SearchResult(UUID id, String title, String snippet, Float rank) {
+}
+
 record TagDto(UUID id, String name) {
 }
 
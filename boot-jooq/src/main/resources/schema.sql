@@ -41,4 +41,19 @@ ALTER TABLE comments ADD CONSTRAINT  pk_comments PRIMARY KEY (id);
 ALTER TABLE comments ADD CONSTRAINT  fk_comments_to_posts FOREIGN KEY (post_id) REFERENCES posts (id) /* [jooq ignore start] */ ON DELETE CASCADE/* [jooq ignore stop] */;
 ALTER TABLE hash_tags ADD CONSTRAINT  pk_hash_tags PRIMARY KEY (id);
 ALTER TABLE posts_tags ADD CONSTRAINT  fk_posts_tags_to_posts FOREIGN KEY (post_id) REFERENCES posts (id) /* [jooq ignore start] */ MATCH FULL/* [jooq ignore stop] */;
-ALTER TABLE posts_tags ADD CONSTRAINT  fk_posts_tags_to_hash_tags FOREIGN KEY (tag_id) REFERENCES hash_tags (id) /* [jooq ignore start] */ MATCH FULL/* [jooq ignore stop] */;
\ No newline at end of file
+ALTER TABLE posts_tags ADD CONSTRAINT  fk_posts_tags_to_hash_tags FOREIGN KEY (tag_id) REFERENCES hash_tags (id) /* [jooq ignore start] */ MATCH FULL/* [jooq ignore stop] */;
+
+-- full-text and trigram search of `PostService.search`, the trigram index also serves `title LIKE '%x%'`.
+-- they are PostgreSQL specific and not a part of the jOOQ generated model.
+/* [jooq ignore start] */
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(content, '')), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_posts_title_trgm ON posts USING GIN (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_posts_search_vector ON posts USING GIN (search_vector);
+/* [jooq ignore stop] */
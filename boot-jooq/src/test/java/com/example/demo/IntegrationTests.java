@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import java.util.List;
@@ -36,4 +37,49 @@ public class IntegrationTests {
                 .value((List<String> titles) -> assertThat(titles).containsAnyOf("jooq test"));
     }
 
+    @Test
+    public void willStreamPosts() {
+        var posts = this.webClient.get().uri("/posts")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(PostSummary.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertThat(posts).extracting(PostSummary::title).contains("jooq test");
+    }
+
+    @Test
+    public void willStreamPostEvents() {
+        var posts = this.webClient.get().uri("/posts")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(PostSummary.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertThat(posts).extracting(PostSummary::title).contains("jooq test");
+    }
+
+    @Test
+    public void willRejectMalformedSearchLimit() {
+        for (var limit : List.of("ten", "0", "-1", "99999999999")) {
+            this.webClient.get().uri("/posts/search?q=jooq&limit={limit}", limit)
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+    }
+
+    @Test
+    public void willCapSearchLimit() {
+        this.webClient.get().uri("/posts/search?q=jooq&limit=100000")
+                .exchange()
+                .expectStatus().isOk();
+    }
 }
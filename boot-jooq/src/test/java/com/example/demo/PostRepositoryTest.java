@@ -29,7 +29,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 public class PostRepositoryTest {
 
     @TestConfiguration
-    @Import({TestcontainersConfiguration.class, JooqConfig.class})
+    @Import({TestcontainersConfiguration.class, JooqConfig.class, PostService.class})
     static class TestConfig {
     }
 
@@ -42,6 +42,9 @@ public class PostRepositoryTest {
     @Autowired
     DSLContext dslContext;
 
+    @Autowired
+    PostService postService;
+
     @SneakyThrows
     @BeforeEach
     public void setup() {
@@ -110,4 +113,19 @@ public class PostRepositoryTest {
                 .verifyComplete();
 
     }
+
+    @Test
+    public void testSearch() {
+        var data = Post.builder().title("Reactive programming with R2dbc").content("R2dbc brings reactive APIs to relational databases").build();
+        var data1 = Post.builder().title("Getting started with Spring").content("Spring Boot makes it easy").build();
+        this.template.insert(data)
+                .then(this.template.insert(data1))
+                .thenMany(this.postService.search("reac", 10))
+                .as(StepVerifier::create)
+                .consumeNextWith(r -> {
+                    assertThat(r.title()).isEqualTo("Reactive programming with R2dbc");
+                    assertThat(r.snippet()).contains("<mark>");
+                })
+                .verifyComplete();
+    }
 }
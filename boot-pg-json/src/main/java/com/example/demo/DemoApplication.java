@@ -1,6 +1,8 @@
 package com.example.demo;
 
 
+import com.example.r2dbc.support.AdmissionControlFilter;
+import com.example.r2dbc.support.ConnectionPoolWarmupConfig;
 import io.r2dbc.postgresql.codec.Json;
 import io.r2dbc.spi.ConnectionFactory;
 import lombok.*;
@@ -10,7 +12,10 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.jackson.JacksonComponent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Version;
 import org.springframework.data.convert.ReadingConverter;
@@ -22,11 +27,15 @@ import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tools.jackson.core.JacksonException;
@@ -41,13 +50,19 @@ import tools.jackson.databind.json.JsonMapper;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 import static org.springframework.web.reactive.function.server.ServerResponse.*;
 
 @SpringBootApplication
+@Import(ConnectionPoolWarmupConfig.class)
 @Slf4j
 public class DemoApplication {
 
@@ -115,6 +130,21 @@ class WebConfig {
                 .path("/posts", () -> postRoutes)
                 .build();
     }
+
+    @Bean
+    AdmissionControlFilter admissionControlFilter(ConnectionFactory connectionFactory, Environment env) {
+        return new AdmissionControlFilter(
+                List.of(
+                        AdmissionControlFilter.RouteGroup.of("list", true, env.getProperty("admission.list.max-concurrency", Integer.class, 16), HttpMethod.GET, "/posts")
+                ),
+                AdmissionControlFilter.RouteGroup.of("default", false, env.getProperty("admission.default.max-concurrency", Integer.class, 128), null, "/**"),
+                connectionFactory,
+                env.getProperty("admission.max-pending-acquire", Integer.class, 10),
+                Duration.parse(env.getProperty("admission.max-latency", "PT1S")),
+                Duration.parse(env.getProperty("admission.retry-after", "PT1S")),
+                Duration.parse(env.getProperty("admission.latency-half-life", "PT10S"))
+        );
+    }
 }
 
 @Slf4j
@@ -163,14 +193,38 @@ class PostHandler {
                 .flatMap(post -> created(URI.create("/posts/" + post.getId())).build());
     }
 
+    // with `If-None-Match`, only the version is read for the ETag, and the post is read only if it is modified.
+    // else the ETag and the body come from the same read.
     public Mono<ServerResponse> get(ServerRequest req) {
-        return this.posts.findById(UUID.fromString(req.pathVariable("id")))
-                .flatMap(post -> ok().body(Mono.just(post), Post.class))
+        var id = UUID.fromString(req.pathVariable("id"));
+        if (req.headers().header(HttpHeaders.IF_NONE_MATCH).isEmpty()) {
+            return getPost(id);
+        }
+        return this.posts.findVersionById(id)
+                .flatMap(version -> {
+                    var etag = etag(version);
+                    if (req.exchange().checkNotModified(etag)) {
+                        return status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                    }
+                    return getPost(id);
+                })
+                .switchIfEmpty(notFound().build());
+    }
+
+    private Mono<ServerResponse> getPost(UUID id) {
+        return this.posts.findById(id)
+                .flatMap(post -> ok().eTag(etag(post.getVersion())).body(Mono.just(post), Post.class))
                 .switchIfEmpty(notFound().build());
     }
 
+    // with `If-Match`, the post is only updated if it is still one of the listed versions, else 412 is returned.
+    // a missing or empty body is 400.
     public Mono<ServerResponse> update(ServerRequest req) {
-        var existed = this.posts.findById(UUID.fromString(req.pathVariable("id")));
+        var ifMatch = ifMatchVersions(req);
+        var existed = this.posts.findById(UUID.fromString(req.pathVariable("id")))
+                .cache();
+        var matched = existed
+                .filter(p -> ifMatch.isEmpty() || ifMatch.get().contains(p.getVersion() == null ? 0L : p.getVersion()));
         return Mono
                 .zip(
                         (data) -> {
@@ -193,13 +247,40 @@ class PostHandler {
                             }
                             return p;
                         },
-                        existed,
+                        matched,
                         req.bodyToMono(Post.class)
+                                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("request body is missing")))
                 )
                 .cast(Post.class)
                 .flatMap(this.posts::save)
-                .flatMap(post -> noContent().build())
-                .switchIfEmpty(notFound().build());
+                .flatMap(post -> noContent().eTag(etag(post.getVersion())).build())
+                .onErrorResume(OptimisticLockingFailureException.class, _ -> status(ifMatch.isPresent() ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build())
+                // the post is read once, it exists but is not a listed version, or it does not exist.
+                .switchIfEmpty(Mono.defer(() -> existed
+                        .flatMap(_ -> status(HttpStatus.PRECONDITION_FAILED).build())
+                        .switchIfEmpty(notFound().build())));
+    }
+
+    // the ETag of a post is its `@Version`, the posts inserted by the scripts have no version yet.
+    static String etag(Long version) {
+        return "\"" + (version == null ? 0 : version) + "\"";
+    }
+
+    // the versions listed by `If-Match`, eg. `"1", W/"2"`, empty if the header is absent or `*`, an unknown ETag never matches.
+    static Optional<Set<Long>> ifMatchVersions(ServerRequest req) {
+        var values = req.headers().header(HttpHeaders.IF_MATCH).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+        if (values.isEmpty() || values.contains("*")) {
+            return Optional.empty();
+        }
+        return Optional.of(values.stream()
+                .map(value -> value.replaceFirst("^W/", "").replace("\"", ""))
+                .filter(value -> value.matches("\\d+"))
+                .map(Long::valueOf)
+                .collect(Collectors.toSet()));
     }
 
     public Mono<ServerResponse> delete(ServerRequest req) {
@@ -214,6 +295,10 @@ interface PostRepository extends R2dbcRepository<Post, UUID> {
 
     @Query("SELECT * FROM posts where title like :title")
     public Flux<Post> findByTitleContains(String title);
+
+    // the posts inserted by the scripts have no version yet, it is 0 as in the ETag.
+    @Query("SELECT coalesce(version, 0) FROM posts WHERE id = :id")
+    Mono<Long> findVersionById(UUID id);
 }
 
 @Data
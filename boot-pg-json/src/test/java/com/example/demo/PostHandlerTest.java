@@ -0,0 +1,127 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PostHandlerTest {
+
+    private final UUID id = UUID.randomUUID();
+    private PostRepository posts;
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setup() {
+        this.posts = mock(PostRepository.class);
+        var post = Post.builder().id(this.id).title("test").content("content").version(1L).build();
+        when(this.posts.findById(any(UUID.class))).thenAnswer(invocation -> this.id.equals(invocation.getArgument(0)) ? Mono.just(post) : Mono.empty());
+        when(this.posts.findVersionById(any(UUID.class))).thenAnswer(invocation -> this.id.equals(invocation.getArgument(0)) ? Mono.just(1L) : Mono.empty());
+        when(this.posts.save(any(Post.class))).thenAnswer(invocation -> {
+            Post saved = invocation.getArgument(0);
+            saved.setVersion(saved.getVersion() + 1);
+            return Mono.just(saved);
+        });
+        this.client = WebTestClient.bindToRouterFunction(new WebConfig().routes(new PostHandler(this.posts))).build();
+    }
+
+    @Test
+    public void testGetWithETag() {
+        this.client.get().uri("/posts/{id}", this.id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody().jsonPath("$.title").isEqualTo("test");
+
+        this.client.get().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // the post is read without `If-None-Match` only, the 304 is answered from the version.
+        verify(this.posts, times(1)).findById(this.id);
+        verify(this.posts, times(1)).findVersionById(this.id);
+    }
+
+    @Test
+    public void testGetIfNoneMatchModified() {
+        this.client.get().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody().jsonPath("$.title").isEqualTo("test");
+
+        this.client.get().uri("/posts/{id}", UUID.randomUUID())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testUpdateIfMatch() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_MATCH, "\"0\", \"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "updated"))
+                .exchange()
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"");
+    }
+
+    @Test
+    public void testUpdateIfMatchFailed() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .header(HttpHeaders.IF_MATCH, "\"2\", \"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "updated"))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        verify(this.posts, times(1)).findById(this.id);
+        verify(this.posts, never()).save(any(Post.class));
+    }
+
+    @Test
+    public void testUpdateWithoutBody() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(this.posts, never()).save(any(Post.class));
+    }
+
+    @Test
+    public void testUpdateWithEmptyBody() {
+        this.client.put().uri("/posts/{id}", this.id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(this.posts, never()).save(any(Post.class));
+    }
+
+    @Test
+    public void testUpdateNotFound() {
+        this.client.put().uri("/posts/{id}", UUID.randomUUID())
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "updated"))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
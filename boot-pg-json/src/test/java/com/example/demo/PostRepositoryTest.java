@@ -15,6 +15,7 @@ import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -72,4 +73,18 @@ public class PostRepositoryTest {
                 .verifyComplete();
 
     }
+
+    @Test
+    public void testFindVersionById() {
+        var saved = this.posts.save(Post.builder().title("test title").content("content of test").build()).block(Duration.ofSeconds(5));
+
+        this.posts.findVersionById(saved.getId())
+                .as(StepVerifier::create)
+                .expectNext(saved.getVersion())
+                .verifyComplete();
+
+        this.posts.findVersionById(UUID.randomUUID())
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
 }
@@ -1,31 +1,77 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.AdmissionControlFilter;
+import com.example.r2dbc.support.CachedRepository;
+import com.example.r2dbc.support.ConnectionPoolWarmupConfig;
+import com.example.r2dbc.support.EntityCacheConfig;
+import com.example.r2dbc.support.SingleFlight;
+import com.example.r2dbc.support.SingleFlightConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Batch;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.ConnectionMetadata;
+import io.r2dbc.spi.IsolationLevel;
+import io.r2dbc.spi.Statement;
+import io.r2dbc.spi.TransactionDefinition;
+import io.r2dbc.spi.ValidationDepth;
+import io.r2dbc.spi.Wrapped;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
 import org.springframework.data.annotation.*;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.ReactiveAuditorAware;
 import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.ResponseEntity.ok;
 
 @SpringBootApplication
+@Import({EntityCacheConfig.class, SingleFlightConfig.class, ConnectionPoolWarmupConfig.class})
 @Slf4j
 public class DemoApplication {
 
@@ -40,15 +86,30 @@ public class DemoApplication {
 class PostController {
     private final PostRepository postRepository;
 
+    @Value("${streaming.flush-size:100}")
+    private int flushSize;
+
     @GetMapping("")
     public Flux<Post> all() {
        return  this.postRepository.findAll();
     }
 
+    // streams the posts with `Accept: application/x-ndjson` or `text/event-stream`, the Jackson encoder writes
+    // and flushes every post when it arrives, the rows are requested from the database `flushSize` at a time
+    // as the client reads them.
+    // it is not a `@SingleFlight` read, a shared read is replayed to the late callers and buffers all the rows.
+    @GetMapping(value = "", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Post> stream() {
+        return this.postRepository.findAll(Sort.unsorted()).limitRate(this.flushSize);
+    }
+
+    // the post is mostly served by the entity cache, the ETag is its version, and the body is not written
+    // when `If-None-Match` matches it, the response is 304 instead.
     @GetMapping("{id}")
-    public ResponseEntity<Mono<Post>> get(@PathVariable UUID id) {
-        var post = this.postRepository.findById(id);
-        return ok( post);
+    public Mono<ResponseEntity<Post>> get(@PathVariable UUID id) {
+        return this.postRepository.findById(id)
+                .map(post -> ok().eTag("\"" + (post.version() == null ? 0 : post.version()) + "\"").body(post))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
 }
@@ -65,7 +126,14 @@ class DataConfig {
 }
 
 
+// `findById` is coalesced by the entity cache already, `@SingleFlight` is for the reads which are not cached.
+@CachedRepository(maximumSize = 1_000)
 interface PostRepository extends R2dbcRepository<Post, UUID> {
+
+    // the list of `GET /posts`, the concurrent requests share one query.
+    @SingleFlight
+    @Override
+    Flux<Post> findAll();
 }
 
 @Table(value = "posts")
@@ -115,4 +183,357 @@ record Post(
 
 }
 
+// instruments the auto-configured `ConnectionPool`, the live pool state is exposed by the `connectionpool` endpoint,
+// the pool is warmed up by the imported `ConnectionPoolWarmupConfig`.
+// the `ConnectionPool` bean is left as it is, it is still injectable and bound to the Boot pool metrics,
+// the `DatabaseClient` and the transaction manager acquire their connections through the instrumentation.
+@Configuration
+class ConnectionPoolConfig {
+
+    // leak detection is off unless `r2dbc.pool.leak-detection-threshold` is set, the acquiring caller is
+    // only captured for `r2dbc.pool.leak-detection-caller-sample-rate` of the acquisitions, a stack walk is not cheap.
+    @Bean(destroyMethod = "dispose")
+    InstrumentedConnectionPool instrumentedConnectionPool(ConnectionPool connectionPool, ObjectProvider<MeterRegistry> meterRegistry, Environment env) {
+        var leakDetectionThreshold = Duration.parse(env.getProperty("r2dbc.pool.leak-detection-threshold", "PT0S"));
+        var callerSampleRate = env.getProperty("r2dbc.pool.leak-detection-caller-sample-rate", Double.class, 0.01);
+        return new InstrumentedConnectionPool("connectionFactory", connectionPool, meterRegistry.getIfAvailable(SimpleMeterRegistry::new),
+                leakDetectionThreshold, callerSampleRate);
+    }
+
+    @Bean
+    DatabaseClient r2dbcDatabaseClient(InstrumentedConnectionPool instrumentedConnectionPool) {
+        return DatabaseClient.builder().connectionFactory(instrumentedConnectionPool.connectionFactory()).build();
+    }
+
+    // bound to the same connection factory as the `DatabaseClient`, or the client would not join the transactions.
+    @Bean
+    R2dbcTransactionManager connectionFactoryTransactionManager(InstrumentedConnectionPool instrumentedConnectionPool) {
+        return new R2dbcTransactionManager(instrumentedConnectionPool.connectionFactory());
+    }
+
+    @Bean
+    ConnectionPoolEndpoint connectionPoolEndpoint(ObjectProvider<InstrumentedConnectionPool> pools) {
+        return new ConnectionPoolEndpoint(pools);
+    }
+}
+
+@Endpoint(id = "connectionpool")
+@RequiredArgsConstructor
+class ConnectionPoolEndpoint {
+    private final ObjectProvider<InstrumentedConnectionPool> pools;
+
+    @ReadOperation
+    public Map<String, ConnectionPoolState> pools() {
+        return this.pools.orderedStream()
+                .collect(Collectors.toMap(InstrumentedConnectionPool::getName, InstrumentedConnectionPool::state));
+    }
+}
+
+record ConnectionPoolState(
+        int acquired,
+        int allocated,
+        int idle,
+        int pending,
+        int maxAllocated,
+        int maxPending,
+        TimerState acquisition,
+        TimerState hold,
+        List<HeldConnection> leakSuspects
+) {
+    record TimerState(long count, double meanMillis, double maxMillis) {
+
+        static TimerState of(Timer timer) {
+            return new TimerState(timer.count(), timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    record HeldConnection(String caller, long heldMillis) {
+    }
+}
+
+// records the acquisition latency(`r2dbc.pool.acquire`), the hold time(`r2dbc.pool.hold`) and the pending
+// acquisitions(`r2dbc.pool.pending`) seen by every acquisition, as histograms.
+// a connection held longer than `leakDetectionThreshold` is reported once, with the caller which acquired it if sampled.
+@Slf4j
+class InstrumentedConnectionPool implements Disposable {
+
+    private final String name;
+    private final ConnectionPool pool;
+    private final Timer acquisition;
+    private final Timer hold;
+    private final DistributionSummary pending;
+    private final Duration leakDetectionThreshold;
+    private final double callerSampleRate;
+    private final Set<TrackedConnection> held = ConcurrentHashMap.newKeySet();
+    private final Disposable leakDetection;
+    private final ConnectionFactory connectionFactory = new InstrumentedConnectionFactory();
+
+    InstrumentedConnectionPool(String name, ConnectionPool pool, MeterRegistry meterRegistry, Duration leakDetectionThreshold, double callerSampleRate) {
+        this.name = name;
+        this.pool = pool;
+        this.acquisition = Timer.builder("r2dbc.pool.acquire")
+                .description("Time to acquire a connection from the pool")
+                .tag("name", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.hold = Timer.builder("r2dbc.pool.hold")
+                .description("Time a connection is held before it is released to the pool")
+                .tag("name", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.pending = DistributionSummary.builder("r2dbc.pool.pending")
+                .description("Pending acquisitions when a connection is requested")
+                .tag("name", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        this.callerSampleRate = callerSampleRate;
+        this.leakDetection = leakDetectionThreshold.isPositive()
+                ? Flux.interval(leakDetectionThreshold.dividedBy(2)).subscribe(_ -> detectLeaks())
+                : Disposables.disposed();
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    // the connection factory acquiring through this instrumentation, it is not a bean, the `ConnectionPool` is.
+    ConnectionFactory connectionFactory() {
+        return this.connectionFactory;
+    }
+
+    Mono<Connection> create() {
+        return Mono.defer(() -> {
+            this.pool.getMetrics().ifPresent(metrics -> this.pending.record(metrics.pendingAcquireSize()));
+            var caller = this.leakDetectionThreshold.isPositive() && ThreadLocalRandom.current().nextDouble() < this.callerSampleRate
+                    ? caller()
+                    : "unknown(not sampled)";
+            var sample = Timer.start();
+            return this.pool.create()
+                    .doOnSuccess(_ -> sample.stop(this.acquisition))
+                    .map(connection -> {
+                        var tracked = new TrackedConnection(connection, caller, System.nanoTime());
+                        this.held.add(tracked);
+                        return tracked;
+                    });
+        });
+    }
+
+    // the pool itself is disposed by its own bean.
+    @Override
+    public void dispose() {
+        this.leakDetection.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return this.leakDetection.isDisposed();
+    }
+
+    ConnectionPoolState state() {
+        var metrics = this.pool.getMetrics();
+        var now = System.nanoTime();
+        var leakSuspects = this.leakDetectionThreshold.isPositive()
+                ? this.held.stream()
+                .filter(c -> now - c.acquiredAt >= this.leakDetectionThreshold.toNanos())
+                .map(c -> new ConnectionPoolState.HeldConnection(c.caller, Duration.ofNanos(now - c.acquiredAt).toMillis()))
+                .toList()
+                : List.<ConnectionPoolState.HeldConnection>of();
+        return new ConnectionPoolState(
+                metrics.map(PoolMetrics::acquiredSize).orElse(-1),
+                metrics.map(PoolMetrics::allocatedSize).orElse(-1),
+                metrics.map(PoolMetrics::idleSize).orElse(-1),
+                metrics.map(PoolMetrics::pendingAcquireSize).orElse(-1),
+                metrics.map(PoolMetrics::getMaxAllocatedSize).orElse(-1),
+                metrics.map(PoolMetrics::getMaxPendingAcquireSize).orElse(-1),
+                ConnectionPoolState.TimerState.of(this.acquisition),
+                ConnectionPoolState.TimerState.of(this.hold),
+                leakSuspects
+        );
+    }
+
+    private void detectLeaks() {
+        var now = System.nanoTime();
+        this.held.stream()
+                .filter(c -> now - c.acquiredAt >= this.leakDetectionThreshold.toNanos())
+                .filter(c -> c.leakReported.compareAndSet(false, true))
+                .forEach(c -> log.warn("connection of pool {} is held for {}, possible leak, acquired by {}",
+                        this.name, Duration.ofNanos(now - c.acquiredAt), c.caller));
+    }
+
+    private void release(TrackedConnection connection) {
+        if (this.held.remove(connection)) {
+            this.hold.record(System.nanoTime() - connection.acquiredAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // the first frame of the application code, a connection is mostly requested in framework code.
+    private static String caller() {
+        return StackWalker.getInstance().walk(frames -> {
+            var candidates = frames
+                    .map(StackWalker.StackFrame::toStackTraceElement)
+                    .filter(f -> !f.getClassName().startsWith(InstrumentedConnectionPool.class.getName()))
+                    .toList();
+            return candidates.stream()
+                    .filter(f -> f.getClassName().startsWith("com.example."))
+                    .findFirst()
+                    .or(() -> candidates.stream()
+                            .filter(f -> !f.getClassName().startsWith("reactor.") && !f.getClassName().startsWith("io.r2dbc."))
+                            .findFirst())
+                    .map(StackTraceElement::toString)
+                    .orElse("unknown");
+        });
+    }
+
+    private class InstrumentedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory> {
+
+        @Override
+        public Mono<Connection> create() {
+            return InstrumentedConnectionPool.this.create();
+        }
+
+        @Override
+        public ConnectionFactoryMetadata getMetadata() {
+            return pool.getMetadata();
+        }
+
+        @Override
+        public ConnectionFactory unwrap() {
+            return pool;
+        }
+    }
+
+    // releases the connection to the pool once, `close` could be called more than once, eg. on cancellation.
+    private class TrackedConnection implements Connection, Wrapped<Connection> {
+        private final Connection delegate;
+        private final String caller;
+        private final long acquiredAt;
+        private final AtomicBoolean leakReported = new AtomicBoolean();
+
+        TrackedConnection(Connection delegate, String caller, long acquiredAt) {
+            this.delegate = delegate;
+            this.caller = caller;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public Publisher<Void> close() {
+            return Mono.defer(() -> {
+                release(this);
+                return Mono.from(this.delegate.close());
+            });
+        }
+
+        @Override
+        public Connection unwrap() {
+            return this.delegate;
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction() {
+            return this.delegate.beginTransaction();
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction(TransactionDefinition definition) {
+            return this.delegate.beginTransaction(definition);
+        }
+
+        @Override
+        public Publisher<Void> commitTransaction() {
+            return this.delegate.commitTransaction();
+        }
+
+        @Override
+        public Batch createBatch() {
+            return this.delegate.createBatch();
+        }
+
+        @Override
+        public Publisher<Void> createSavepoint(String name) {
+            return this.delegate.createSavepoint(name);
+        }
+
+        @Override
+        public Statement createStatement(String sql) {
+            return this.delegate.createStatement(sql);
+        }
+
+        @Override
+        public boolean isAutoCommit() {
+            return this.delegate.isAutoCommit();
+        }
+
+        @Override
+        public ConnectionMetadata getMetadata() {
+            return this.delegate.getMetadata();
+        }
+
+        @Override
+        public IsolationLevel getTransactionIsolationLevel() {
+            return this.delegate.getTransactionIsolationLevel();
+        }
+
+        @Override
+        public Publisher<Void> releaseSavepoint(String name) {
+            return this.delegate.releaseSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransaction() {
+            return this.delegate.rollbackTransaction();
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransactionToSavepoint(String name) {
+            return this.delegate.rollbackTransactionToSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> setAutoCommit(boolean autoCommit) {
+            return this.delegate.setAutoCommit(autoCommit);
+        }
+
+        @Override
+        public Publisher<Void> setLockWaitTimeout(Duration timeout) {
+            return this.delegate.setLockWaitTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setStatementTimeout(Duration timeout) {
+            return this.delegate.setStatementTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setTransactionIsolationLevel(IsolationLevel isolationLevel) {
+            return this.delegate.setTransactionIsolationLevel(isolationLevel);
+        }
+
+        @Override
+        public Publisher<Boolean> validate(ValidationDepth depth) {
+            return this.delegate.validate(depth);
+        }
+    }
+}
+
+@Configuration
+class AdmissionControlConfig {
+
+    @Bean
+    AdmissionControlFilter admissionControlFilter(ConnectionFactory connectionFactory, Environment env) {
+        return new AdmissionControlFilter(
+                List.of(
+                        // the probes and the metrics are never shed.
+                        AdmissionControlFilter.RouteGroup.unmetered("actuator", "/actuator/**"),
+                        AdmissionControlFilter.RouteGroup.of("list", true, env.getProperty("admission.list.max-concurrency", Integer.class, 16), HttpMethod.GET, "/posts")
+                ),
+                AdmissionControlFilter.RouteGroup.of("default", false, env.getProperty("admission.default.max-concurrency", Integer.class, 128), null, "/**"),
+                connectionFactory,
+                env.getProperty("admission.max-pending-acquire", Integer.class, 10),
+                Duration.parse(env.getProperty("admission.max-latency", "PT1S")),
+                Duration.parse(env.getProperty("admission.retry-after", "PT1S")),
+                Duration.parse(env.getProperty("admission.latency-half-life", "PT10S"))
+        );
+    }
+}
 
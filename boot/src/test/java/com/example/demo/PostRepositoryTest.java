@@ -1,11 +1,16 @@
 package com.example.demo;
 
 
+import com.example.r2dbc.support.EntityCacheConfig;
+import com.example.r2dbc.support.SingleFlightConfig;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.data.r2dbc.test.autoconfigure.DataR2dbcTest;
 import org.springframework.context.annotation.Import;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -13,11 +18,17 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @DataR2dbcTest()
 @Slf4j
-@Import(value = {TestcontainersConfiguration.class, DataConfig.class})
+@Import(value = {TestcontainersConfiguration.class, DataConfig.class, EntityCacheConfig.class, SingleFlightConfig.class, ConnectionPoolConfig.class})
 public class PostRepositoryTest {
     @Autowired
     PostRepository posts;
 
+    @Autowired
+    ConnectionPoolEndpoint connectionPoolEndpoint;
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
     @Test
     public void testInsertAndQuery() {
         var data = Post.of("test title", "content of test");
@@ -40,4 +51,64 @@ public class PostRepositoryTest {
 
     }
 
+    @Test
+    public void testCachedFindById() {
+        var saved = this.posts.save(Post.of("test title", "content of test")).block();
+
+        // the saved post is evicted, then the update is read by findById.
+        this.posts.findById(saved.id())
+                .flatMap(p -> this.posts.save(new Post(p.id(), "updated", p.content(), p.status(), p.createdAt(), p.createdBy(), p.updatedAt(), p.updatedBy(), p.version())))
+                .then(this.posts.findById(saved.id()))
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> assertThat(p.title()).isEqualTo("updated"))
+                .verifyComplete();
+
+        this.posts.deleteById(saved.id())
+                .then(this.posts.findById(saved.id()))
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testSingleFlightFindAll() {
+        this.posts.save(Post.of("test title", "content of test")).block();
+        var acquisitions = acquisitionCount();
+
+        // the concurrent calls share one query, and so one connection.
+        Flux.range(0, 10)
+                .flatMap(_ -> this.posts.findAll().collectList())
+                .distinct()
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(acquisitionCount()).isEqualTo(acquisitions + 1);
+    }
+
+    private long acquisitionCount() {
+        return this.connectionPoolEndpoint.pools().values().stream()
+                .mapToLong(state -> state.acquisition().count())
+                .sum();
+    }
+
+    @Test
+    public void testConnectionPoolState() {
+        this.posts.findAll()
+                .then()
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        var pools = this.connectionPoolEndpoint.pools();
+        assertThat(pools).isNotEmpty();
+        pools.values().forEach(state -> {
+            assertThat(state.acquired()).isZero();
+            assertThat(state.acquisition().count()).isPositive();
+            assertThat(state.hold().count()).isPositive();
+        });
+    }
+
+    @Test
+    public void testConnectionPoolBeanIsNotReplaced() {
+        assertThat(this.connectionFactory).isInstanceOf(ConnectionPool.class);
+    }
+
 }
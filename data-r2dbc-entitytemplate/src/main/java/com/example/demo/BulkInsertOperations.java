@@ -0,0 +1,161 @@
+package com.example.demo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.data.mapping.callback.ReactiveEntityCallbacks;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.r2dbc.mapping.event.BeforeConvertCallback;
+import org.springframework.data.r2dbc.mapping.event.BeforeSaveCallback;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Inserts entities in chunks, every chunk is rendered from the mapping metadata into one multi-row
+ * {@code INSERT ... VALUES (...), (...)} statement.
+ * <p>
+ * The order of the rows returned by a multi-row insert is not guaranteed, so the ids are not read back,
+ * a {@code UUID} id is generated before the insert instead, and any other id type must be assigned by the caller.
+ * <p>
+ * Entities go through the same callbacks as {@code R2dbcEntityTemplate.insert}, eg. the auditing
+ * callback, and a column without value falls back to {@code DEFAULT} as a single insert would.
+ */
+@Component
+@Slf4j
+public class BulkInsertOperations {
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final int DEFAULT_CONCURRENCY = 2;
+
+    private final R2dbcEntityTemplate template;
+    private final ReactiveEntityCallbacks entityCallbacks;
+
+    public BulkInsertOperations(R2dbcEntityTemplate template, BeanFactory beanFactory) {
+        this.template = template;
+        this.entityCallbacks = ReactiveEntityCallbacks.create(beanFactory);
+    }
+
+    public <T> Flux<T> insertAll(Publisher<T> entities, Class<T> type) {
+        return insertAll(entities, type, DEFAULT_CHUNK_SIZE, DEFAULT_CONCURRENCY);
+    }
+
+    // at most `concurrency` chunks, and so connections, are in flight, the saved entities are emitted in the input order.
+    public <T> Flux<T> insertAll(Publisher<T> entities, Class<T> type, int chunkSize, int concurrency) {
+        Assert.isTrue(chunkSize > 0, "chunkSize should be greater than 0");
+        Assert.isTrue(concurrency > 0, "concurrency should be greater than 0");
+        RelationalPersistentEntity<T> persistentEntity = persistentEntity(type);
+        SqlIdentifier tableName = persistentEntity.getQualifiedTableName();
+
+        return Flux.from(entities)
+                .concatMap(entity -> beforeSave(persistentEntity, entity, tableName))
+                .buffer(chunkSize)
+                .flatMapSequential(chunk -> insertChunk(persistentEntity, tableName, chunk), concurrency);
+    }
+
+    private <T> Mono<Converted<T>> beforeSave(RelationalPersistentEntity<T> persistentEntity, T entity, SqlIdentifier tableName) {
+        return this.entityCallbacks.callback(BeforeConvertCallback.class, entity, tableName)
+                .map(converted -> setIdIfNecessary(persistentEntity, setVersionIfNecessary(persistentEntity, converted)))
+                .flatMap(converted -> {
+                    OutboundRow row = this.template.getDataAccessStrategy().getOutboundRow(converted);
+                    return this.entityCallbacks.callback(BeforeSaveCallback.class, converted, row, tableName)
+                            .map(saved -> new Converted<>(saved, row));
+                });
+    }
+
+    private <T> Flux<T> insertChunk(RelationalPersistentEntity<T> persistentEntity, SqlIdentifier tableName, List<Converted<T>> chunk) {
+        var dataAccessStrategy = this.template.getDataAccessStrategy();
+
+        // the columns having a value in any of the rows, other cells of these columns are rendered as DEFAULT.
+        var columns = new LinkedHashSet<SqlIdentifier>();
+        chunk.forEach(c -> c.row().forEach((column, parameter) -> {
+            if (parameter.hasValue()) {
+                columns.add(column);
+            }
+        }));
+
+        if (!(dataAccessStrategy.getDialect() instanceof R2dbcDialect dialect)) {
+            return Flux.error(new IllegalStateException("R2dbcDialect is required to render bind markers"));
+        }
+        var bindMarkers = dialect.getBindMarkersFactory().create();
+        var values = new ArrayList<Parameter>();
+        var sql = new StringBuilder("INSERT INTO ")
+                .append(dataAccessStrategy.toSql(tableName))
+                .append(" (")
+                .append(String.join(", ", columns.stream().map(dataAccessStrategy::toSql).toList()))
+                .append(") VALUES ");
+        for (int i = 0; i < chunk.size(); i++) {
+            var row = chunk.get(i).row();
+            sql.append(i == 0 ? "(" : ", (");
+            int j = 0;
+            for (SqlIdentifier column : columns) {
+                sql.append(j++ == 0 ? "" : ", ");
+                Parameter parameter = row.get(column);
+                if (parameter != null && parameter.hasValue()) {
+                    sql.append(bindMarkers.next().getPlaceholder());
+                    values.add(dataAccessStrategy.getBindValue(parameter));
+                } else {
+                    sql.append("DEFAULT");
+                }
+            }
+            sql.append(")");
+        }
+
+        var spec = this.template.getDatabaseClient().sql(sql.toString());
+        for (int i = 0; i < values.size(); i++) {
+            spec = spec.bind(i, values.get(i));
+        }
+
+        // the ids are assigned before the insert, nothing has to be read back.
+        return spec.fetch().rowsUpdated()
+                .thenMany(Flux.fromIterable(chunk))
+                .concatMap(saved -> this.entityCallbacks.callback(AfterSaveCallback.class, saved.entity(), saved.row(), tableName));
+    }
+
+    private <T> T setIdIfNecessary(RelationalPersistentEntity<T> persistentEntity, T entity) {
+        var idProperty = persistentEntity.getRequiredIdProperty();
+        var accessor = this.template.getConverter().getPropertyAccessor(persistentEntity, entity);
+        if (accessor.getProperty(idProperty) != null) {
+            return entity;
+        }
+        if (!UUID.class.equals(idProperty.getType())) {
+            throw new IllegalStateException("The id of " + persistentEntity.getType().getName() + " must be assigned before a bulk insert");
+        }
+        accessor.setProperty(idProperty, UUID.randomUUID());
+        return accessor.getBean();
+    }
+
+    // like `R2dbcEntityTemplate.insert`, the version of a new entity is initialized to 0.
+    private <T> T setVersionIfNecessary(RelationalPersistentEntity<T> persistentEntity, T entity) {
+        var versionProperty = persistentEntity.getVersionProperty();
+        if (versionProperty == null) {
+            return entity;
+        }
+        var accessor = this.template.getConverter().getPropertyAccessor(persistentEntity, entity);
+        if (accessor.getProperty(versionProperty) == null) {
+            var initial = this.template.getConverter().getConversionService().convert(0L, versionProperty.getType());
+            accessor.setProperty(versionProperty, initial);
+        }
+        return accessor.getBean();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> RelationalPersistentEntity<T> persistentEntity(Class<T> type) {
+        return (RelationalPersistentEntity<T>) this.template.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+    }
+
+    private record Converted<T>(T entity, OutboundRow row) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.UUID;
+
+// the result of a chunk of `PostRepository.updateAll`, `conflicts` are the ids which were not updated,
+// they were changed(the version does not match) or deleted by others in the meantime.
+record BulkUpdateResult(long updated, List<UUID> conflicts) {
+}
@@ -1,5 +1,9 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.ReadWriteRoutingConnectionFactory;
+import com.example.r2dbc.support.ReadWriteRoutingTransactionManager;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionFactory;
 import io.r2dbc.postgresql.codec.EnumCodec;
@@ -12,13 +16,15 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
 import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
-import org.springframework.r2dbc.connection.R2dbcTransactionManager;
 import org.springframework.r2dbc.connection.init.CompositeDatabasePopulator;
 import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
 import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
 import org.springframework.transaction.ReactiveTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -34,30 +40,60 @@ public class DatabaseConfig extends AbstractR2dbcConfiguration {
     @Override
     @Bean
     public ConnectionFactory connectionFactory() {
+        String host = env.getProperty("r2dbc.host", "localhost");
+        Integer port = env.getProperty("r2dbc.port", Integer.class);
+        var primary = postgresConnectionPool(host, port != null ? port : 3456);
+
+        // read replicas, eg. `r2dbc.replicas=replica1:5432,replica2:5432`
+        List<ConnectionFactory> replicas = Arrays.stream(env.getProperty("r2dbc.replicas", String[].class, new String[0]))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(hostAndPort -> {
+                    var parts = hostAndPort.split(":");
+                    return (ConnectionFactory) postgresConnectionPool(parts[0], parts.length > 1 ? Integer.parseInt(parts[1]) : 5432);
+                })
+                .toList();
+
+        return new ReadWriteRoutingConnectionFactory(
+                primary,
+                replicas,
+                env.getProperty("r2dbc.replicas.selection", ReadWriteRoutingConnectionFactory.Selection.class,
+                        ReadWriteRoutingConnectionFactory.Selection.ROUND_ROBIN),
+                Duration.parse(env.getProperty("r2dbc.replicas.maxLag", "PT5S")),
+                Duration.parse(env.getProperty("r2dbc.replicas.probeInterval", "PT5S"))
+        );
+    }
+
+    // the primary and the replicas are pooled alike, `ReadWriteRoutingConnectionFactory` disposes them on close.
+    private ConnectionPool postgresConnectionPool(String host, int port) {
         CodecRegistrar codecRegistrar = EnumCodec.builder()
                 .withEnum("post_status", Post.Status.class)
                 .build();
-        String host = env.getProperty("r2dbc.host", "localhost");
-        Integer port = env.getProperty("r2dbc.port", Integer.class);
         String dbName = env.getProperty("r2dbc.databaseName", "testdb");
         String user = env.getProperty("r2dbc.username", "user");
         String password = env.getProperty("r2dbc.password", "password");
 
-        return new PostgresqlConnectionFactory(
+        var connectionFactory = new PostgresqlConnectionFactory(
                 PostgresqlConnectionConfiguration.builder()
                         .host(host)
-                        .port(port != null ? port : 3456)
+                        .port(port)
                         .database(dbName)
                         .username(user)
                         .password(password)
                         .codecRegistrar(codecRegistrar)
                         .build()
         );
+        return new ConnectionPool(
+                ConnectionPoolConfiguration.builder(connectionFactory)
+                        .initialSize(env.getProperty("r2dbc.pool.initialSize", Integer.class, 2))
+                        .maxSize(env.getProperty("r2dbc.pool.maxSize", Integer.class, 10))
+                        .build()
+        );
     }
 
     @Bean
     ReactiveTransactionManager transactionManager(ConnectionFactory connectionFactory) {
-        return new R2dbcTransactionManager(connectionFactory);
+        return new ReadWriteRoutingTransactionManager(connectionFactory);
     }
 
     @Bean
@@ -2,15 +2,27 @@ package com.example.demo;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.relational.core.query.Query;
 import org.springframework.data.relational.core.query.Update;
+import org.springframework.r2dbc.core.Parameter;
 import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.springframework.data.relational.core.query.Criteria.where;
 
@@ -19,7 +31,14 @@ import static org.springframework.data.relational.core.query.Criteria.where;
 @Slf4j
 public class PostRepository {
 
+    static final long ESTIMATED_TOTAL_THRESHOLD = 100_000;
+    static final int DEFAULT_UPDATE_CHUNK_SIZE = 500;
+    static final int DEFAULT_UPDATE_CONCURRENCY = 2;
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+    private static final String TITLE_LIKE = "WHERE title LIKE :title";
+
     private final R2dbcEntityTemplate template;
+    private final BulkInsertOperations bulkInsertOperations;
 
     public Flux<Post> findByTitleContains(String name) {
         return this.template.select(Post.class)
@@ -27,6 +46,101 @@ public class PostRepository {
                 .all();
     }
 
+    public Mono<Page<Post>> findByTitleContains(String name, Pageable pageable) {
+        return findByTitleContains(name, pageable, true);
+    }
+
+    // the page content and the total are read from a single statement by `count(*) OVER()`,
+    // when an exact total is not required and the planner estimates more than ESTIMATED_TOTAL_THRESHOLD rows,
+    // the estimate is used as the total and the matched rows are not counted at all.
+    public Mono<Page<Post>> findByTitleContains(String name, Pageable pageable, boolean exactTotal) {
+        if (exactTotal) {
+            return pageWithTotal(TITLE_LIKE, "%" + name + "%", pageable);
+        }
+        return findByTitleContains(name, pageable, ESTIMATED_TOTAL_THRESHOLD);
+    }
+
+    // the estimate is used as the total when the planner estimates more rows than the threshold.
+    Mono<Page<Post>> findByTitleContains(String name, Pageable pageable, long estimatedTotalThreshold) {
+        var where = TITLE_LIKE;
+        var title = "%" + name + "%";
+        return this.template.getDatabaseClient()
+                .sql("EXPLAIN SELECT * FROM posts " + where)
+                .bind("title", title)
+                .map((row, rowMetadata) -> row.get(0, String.class))
+                .first()
+                .map(PostRepository::estimatedRows)
+                .flatMap(estimated -> estimated > estimatedTotalThreshold
+                        ? page(where, title, pageable, false).map(page -> (Page<Post>) new PageImpl<>(page.content(), pageable, estimated))
+                        : pageWithTotal(where, title, pageable)
+                );
+    }
+
+    private Mono<Page<Post>> pageWithTotal(String where, String title, Pageable pageable) {
+        return page(where, title, pageable, true)
+                .flatMap(page -> {
+                    // an empty page beyond the last one does not tell the total.
+                    if (page.content().isEmpty() && pageable.isPaged() && pageable.getOffset() > 0) {
+                        return countByTitleLike(title).map(total -> new PageImpl<>(page.content(), pageable, total));
+                    }
+                    return Mono.just(new PageImpl<>(page.content(), pageable, page.total()));
+                });
+    }
+
+    private Mono<Content> page(String where, String title, Pageable pageable, boolean withTotal) {
+        var sql = new StringBuilder("SELECT *")
+                .append(withTotal ? ", count(*) OVER() AS total_count" : "")
+                .append(" FROM posts ").append(where)
+                .append(" ORDER BY ").append(orderBy(pageable.getSort()));
+        if (pageable.isPaged()) {
+            sql.append(" LIMIT ").append(pageable.getPageSize()).append(" OFFSET ").append(pageable.getOffset());
+        }
+        var converter = this.template.getConverter();
+        return this.template.getDatabaseClient()
+                .sql(sql.toString())
+                .bind("title", title)
+                .map((row, rowMetadata) -> new CountedRow(
+                        converter.read(Post.class, row, rowMetadata),
+                        withTotal ? row.get("total_count", Long.class) : 0L
+                ))
+                .all()
+                .collectList()
+                // every row carries the same total, an empty page has none.
+                .map(rows -> new Content(
+                        rows.stream().map(CountedRow::post).toList(),
+                        rows.isEmpty() ? 0L : rows.getFirst().total()
+                ));
+    }
+
+    // the properties are resolved to mapped columns, the id is always the last sort key to keep pages stable.
+    private String orderBy(Sort sort) {
+        var entity = this.template.getConverter().getMappingContext().getRequiredPersistentEntity(Post.class);
+        var dataAccessStrategy = this.template.getDataAccessStrategy();
+        var orders = new ArrayList<String>();
+        for (Sort.Order order : sort) {
+            var column = entity.getRequiredPersistentProperty(order.getProperty()).getColumnName();
+            orders.add(dataAccessStrategy.toSql(column) + (order.isAscending() ? " ASC" : " DESC"));
+        }
+        orders.add(dataAccessStrategy.toSql(entity.getRequiredIdProperty().getColumnName()));
+        return String.join(", ", orders);
+    }
+
+    // the first line of the plan, eg. `Seq Scan on posts  (cost=0.00..18.10 rows=3 width=144)`
+    static long estimatedRows(String plan) {
+        var matcher = PLAN_ROWS.matcher(plan);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0L;
+    }
+
+    private Mono<Long> countByTitleLike(String title) {
+        return this.template.count(Query.query(where("title").like(title)), Post.class);
+    }
+
+    private record CountedRow(Post post, long total) {
+    }
+
+    private record Content(List<Post> content, long total) {
+    }
+
     public Mono<Long> countByTitleContains(String name) {
         return this.template.count(Query.query(where("title").like("%" + name + "%")), Post.class);
     }
@@ -35,6 +149,36 @@ public class PostRepository {
         return this.template.select(Post.class).all();
     }
 
+    // only the columns of the projection are rendered in the SELECT clause, eg. `SELECT id, title FROM posts`,
+    // and the rows are mapped into the projection directly without instantiating `Post`.
+    public <R extends Record> Flux<R> findAll(Class<R> projection) {
+        return this.template.select(Post.class)
+                .as(projection)
+                .matching(Query.empty().columns(projectedColumns(projection)))
+                .all();
+    }
+
+    public <R extends Record> Flux<R> findByTitleContains(String name, Class<R> projection) {
+        return this.template.select(Post.class)
+                .as(projection)
+                .matching(Query.query(where("title").like("%" + name + "%")).columns(projectedColumns(projection)))
+                .all();
+    }
+
+    public <R extends Record> Mono<R> findById(UUID id, Class<R> projection) {
+        return this.template.select(Post.class)
+                .as(projection)
+                .matching(Query.query(where("id").is(id)).columns(projectedColumns(projection)))
+                .one();
+    }
+
+    // the record components of the projection are the properties of `Post` to select.
+    static String[] projectedColumns(Class<? extends Record> projection) {
+        return Arrays.stream(projection.getRecordComponents())
+                .map(RecordComponent::getName)
+                .toArray(String[]::new);
+    }
+
     public Mono<Long> count() {
         return this.template.count(Query.empty(), Post.class);
     }
@@ -67,19 +211,73 @@ public class PostRepository {
                 Post.class);
     }
 
+    public Flux<BulkUpdateResult> updateAll(Publisher<Post> data) {
+        return updateAll(data, DEFAULT_UPDATE_CHUNK_SIZE, DEFAULT_UPDATE_CONCURRENCY);
+    }
+
+    /**
+     * Every chunk is one {@code UPDATE ... FROM (VALUES ...)} statement, a row is only updated when its version
+     * still matches, and the version is increased like {@code template.update(entity)}.
+     * <p>
+     * The statement is sent by the {@code DatabaseClient} directly, the entity callbacks and the auditing
+     * are not applied to the updated posts.
+     */
+    public Flux<BulkUpdateResult> updateAll(Publisher<Post> data, int chunkSize, int concurrency) {
+        Assert.isTrue(chunkSize > 0, "chunkSize should be greater than 0");
+        Assert.isTrue(concurrency > 0, "concurrency should be greater than 0");
+        return Flux.from(data)
+                .buffer(chunkSize)
+                .flatMapSequential(this::updateChunk, concurrency);
+    }
+
+    private Mono<BulkUpdateResult> updateChunk(List<Post> chunk) {
+        var sql = new StringBuilder("UPDATE posts p SET title = v.title, content = v.content, ")
+                .append("status = CAST(v.status AS post_status), tags = CAST(v.tags AS varchar[]), version = p.version + 1 ")
+                .append("FROM (VALUES ");
+        for (int i = 0; i < chunk.size(); i++) {
+            int n = i * 6;
+            sql.append(i == 0 ? "" : ", ")
+                    .append("($").append(n + 1).append(", $").append(n + 2).append(", $").append(n + 3)
+                    .append(", $").append(n + 4).append(", $").append(n + 5).append(", $").append(n + 6).append(")");
+        }
+        sql.append(") AS v(id, title, content, status, tags, version) ")
+                .append("WHERE p.id = v.id AND p.version IS NOT DISTINCT FROM v.version ")
+                .append("RETURNING p.id");
+
+        var spec = this.template.getDatabaseClient().sql(sql.toString());
+        int index = 0;
+        for (Post p : chunk) {
+            spec = spec.bind(index++, p.id())
+                    .bind(index++, Parameter.fromOrEmpty(p.title(), String.class))
+                    .bind(index++, Parameter.fromOrEmpty(p.content(), String.class))
+                    .bind(index++, Parameter.fromOrEmpty(p.status() == null ? null : p.status().name(), String.class))
+                    .bind(index++, Parameter.fromOrEmpty(p.tags() == null ? null : p.tags().toArray(new String[0]), String[].class))
+                    .bind(index++, Parameter.fromOrEmpty(p.version(), Long.class));
+        }
+
+        return spec
+                .map((row, rowMetadata) -> row.get("id", UUID.class))
+                .all()
+                .collect(Collectors.toSet())
+                .map(updated -> new BulkUpdateResult(
+                        updated.size(),
+                        chunk.stream().map(Post::id).filter(id -> !updated.contains(id)).toList()
+                ));
+    }
+
     public Mono<Long> deleteById(UUID id) {
         return this.template.delete(Query.query(where("id").is(id)), Post.class);
     }
 
+    // one multi-row INSERT per chunk instead of an INSERT per post,
+    // and the number of connections used by an import is bounded by the concurrency.
     public Flux<UUID> saveAll(List<Post> data) {
+        return saveAll(Flux.fromIterable(data), BulkInsertOperations.DEFAULT_CHUNK_SIZE, BulkInsertOperations.DEFAULT_CONCURRENCY);
+    }
 
-        return Flux.fromIterable(data)
-                .flatMap(p -> this.template
-                        .insert(Post.class)
-                        .using(p)
-                        .map(Post::id)
-                );
-
+    public Flux<UUID> saveAll(Publisher<Post> data, int chunkSize, int concurrency) {
+        return this.bulkInsertOperations.insertAll(data, Post.class, chunkSize, concurrency)
+                .map(Post::id);
     }
 
     public Mono<Long> deleteAll() {
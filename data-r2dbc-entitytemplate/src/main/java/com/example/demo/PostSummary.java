@@ -0,0 +1,6 @@
+package com.example.demo;
+
+import java.util.UUID;
+
+record PostSummary(UUID id, String title) {
+}
@@ -1,5 +1,7 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.ReadWriteRoutingConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
@@ -7,10 +9,19 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -23,13 +34,22 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class PostRepositoryTest {
 
     @Configuration
-    @Import(value = {DatabaseConfig.class, PostRepository.class})
+    @Import(value = {DatabaseConfig.class, PostRepository.class, BulkInsertOperations.class})
     static class TestConfig {
     }
 
     @Autowired
     PostRepository posts;
 
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Autowired
+    R2dbcEntityTemplate template;
+
+    @Autowired
+    ReactiveTransactionManager transactionManager;
+
     @SneakyThrows
     @BeforeEach
     public void setup() {
@@ -57,6 +77,143 @@ public class PostRepositoryTest {
 
     }
 
+    @Test
+    public void testSaveAllInChunks() {
+        var data = Flux.range(1, 1_000).map(i -> Post.of("test" + i, "content" + i));
+
+        posts.saveAll(data, 100, 2)
+                .as(StepVerifier::create)
+                .expectNextCount(1_000)
+                .verifyComplete();
+
+        posts.count()
+                .as(StepVerifier::create)
+                .expectNext(1_000L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testSaveAllReturnsTheIdOfEachPost() {
+        var data = Flux.range(1, 100).map(i -> Post.of("test" + i, "content" + i));
+
+        posts.saveAll(data, 10, 2)
+                .index()
+                .concatMap(indexed -> posts.findById(indexed.getT2())
+                        .map(post -> post.title().equals("test" + (indexed.getT1() + 1))))
+                .as(StepVerifier::create)
+                .thenConsumeWhile(Boolean::booleanValue)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFindByTitleContainsPaged() {
+        var data = Flux.range(1, 25).map(i -> Post.of("paged" + i, "content" + i));
+
+        posts.saveAll(data, 10, 1)
+                .thenMany(posts.findByTitleContains("paged", PageRequest.of(1, 10, Sort.by("title"))))
+                .as(StepVerifier::create)
+                .consumeNextWith(page -> {
+                    assertThat(page.getContent()).hasSize(10);
+                    assertThat(page.getTotalElements()).isEqualTo(25);
+                    assertThat(page.getTotalPages()).isEqualTo(3);
+                })
+                .verifyComplete();
+
+        posts.findByTitleContains("paged", PageRequest.of(5, 10))
+                .as(StepVerifier::create)
+                .consumeNextWith(page -> {
+                    assertThat(page.getContent()).isEmpty();
+                    assertThat(page.getTotalElements()).isEqualTo(25);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFindByTitleContainsEstimatedTotal() {
+        var data = Flux.range(1, 25).map(i -> Post.of("estimated" + i, "content" + i));
+        posts.saveAll(data, 10, 1).blockLast(Duration.ofSeconds(10));
+
+        // few rows are estimated, the total is counted.
+        posts.findByTitleContains("estimated", PageRequest.of(0, 10), false)
+                .as(StepVerifier::create)
+                .consumeNextWith(page -> {
+                    assertThat(page.getContent()).hasSize(10);
+                    assertThat(page.getTotalElements()).isEqualTo(25);
+                })
+                .verifyComplete();
+
+        // more rows than the threshold are estimated, the estimate of the plan is the total.
+        var estimated = this.template.getDatabaseClient()
+                .sql("EXPLAIN SELECT * FROM posts WHERE title LIKE :title")
+                .bind("title", "%estimated%")
+                .map((row, rowMetadata) -> PostRepository.estimatedRows(row.get(0, String.class)))
+                .first()
+                .block(Duration.ofSeconds(5));
+        posts.findByTitleContains("estimated", PageRequest.of(0, 10), 0L)
+                .as(StepVerifier::create)
+                .consumeNextWith(page -> {
+                    assertThat(page.getContent()).hasSize(10);
+                    assertThat(page.getTotalElements()).isEqualTo(Math.max(estimated, 10));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testPageCanBeResubscribed() {
+        var data = Flux.range(1, 15).map(i -> Post.of("resubscribed" + i, "content" + i));
+        posts.saveAll(data, 10, 1).blockLast(Duration.ofSeconds(10));
+
+        var page = posts.findByTitleContains("resubscribed", PageRequest.of(0, 10));
+        page.concatWith(page)
+                .map(Page::getTotalElements)
+                .as(StepVerifier::create)
+                .expectNext(15L, 15L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testProjection() {
+        this.posts.save(Post.of("test", "content", List.of("spring", "r2dbc")))
+                .flatMap(id -> this.posts.findById(id, PostSummary.class))
+                .as(StepVerifier::create)
+                .consumeNextWith(r -> assertThat(r.title()).isEqualTo("test"))
+                .verifyComplete();
+
+        this.posts.findAll(PostSummary.class)
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testUpdateAll() {
+        var saved = this.posts.saveAll(List.of(Post.of("test", "content"), Post.of("test1", "content1")))
+                .flatMap(id -> this.posts.findById(id))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        var first = saved.get(0);
+        var second = saved.get(1);
+
+        var updated = new Post(first.id(), "updated", first.content(), Post.Status.PUBLISHED, first.tags(), first.version());
+        var stale = new Post(second.id(), "stale", second.content(), second.status(), second.tags(), second.version() + 1);
+
+        this.posts.updateAll(Flux.just(updated, stale))
+                .as(StepVerifier::create)
+                .consumeNextWith(r -> {
+                    assertThat(r.updated()).isEqualTo(1);
+                    assertThat(r.conflicts()).containsExactly(second.id());
+                })
+                .verifyComplete();
+
+        this.posts.findById(first.id())
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> {
+                    assertThat(p.title()).isEqualTo("updated");
+                    assertThat(p.version()).isEqualTo(first.version() + 1);
+                })
+                .verifyComplete();
+    }
+
     //see: https://stackoverflow.com/questions/64374730/java-r2dbc-client-execute-sql-and-use-returned-id-for-next-execute/64409363#64409363
     @Test
     public void testInsertAndQuery() {
@@ -80,5 +237,26 @@ public class PostRepositoryTest {
                 .consumeNextWith(deleted -> assertThat(deleted).isEqualTo(1))
                 .verifyComplete();
     }
-}
 
+    @Test
+    public void testReadOnlyRouting() {
+        var routing = (ReadWriteRoutingConnectionFactory) connectionFactory;
+        routing.determineCurrentLookupKey()
+                .as(StepVerifier::create)
+                .expectNext(ReadWriteRoutingConnectionFactory.PRIMARY)
+                .verifyComplete();
+        routing.determineCurrentLookupKey()
+                .contextWrite(ReadWriteRoutingConnectionFactory.readOnly())
+                .as(StepVerifier::create)
+                .expectNext("replica-0")
+                .verifyComplete();
+
+        var definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(true);
+        this.posts.save(Post.of("test", "content"))
+                .thenMany(TransactionalOperator.create(transactionManager, definition).transactional(this.posts.findAll()))
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+}
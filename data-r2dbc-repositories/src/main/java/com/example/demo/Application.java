@@ -1,14 +1,17 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.EntityCacheConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
 
 @Configuration
 @ComponentScan
+@Import(EntityCacheConfig.class)
 @PropertySource(value = "classpath:application.properties", ignoreResourceNotFound = true)
 @Slf4j
 public class Application {
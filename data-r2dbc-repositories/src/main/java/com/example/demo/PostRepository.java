@@ -1,14 +1,27 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.CachedRepository;
+import com.example.r2dbc.support.PostSearchQueries;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
 
+@CachedRepository(maximumSize = 1_000)
 public interface PostRepository extends R2dbcRepository<Post, UUID> {
     public Flux<Post> findByTitleContains(String name);
 
     public Mono<Long> countByTitleContains(String name);
 
-}
\ No newline at end of file
+    // ranked full-text search, every word is matched as a prefix, eg. `reac spr` matches `reactive spring`.
+    default Flux<SearchResult> search(String query, int limit) {
+        var tsQuery = PostSearchQueries.prefixTsQuery(query);
+        return tsQuery.isEmpty() ? Flux.empty() : searchByTsQuery(tsQuery, query.trim(), limit);
+    }
+
+    @Query(PostSearchQueries.SEARCH)
+    Flux<SearchResult> searchByTsQuery(String tsQuery, String keyword, int limit);
+
+}
@@ -0,0 +1,6 @@
+package com.example.demo;
+
+import java.util.UUID;
+
+record SearchResult(UUID id, String title, String snippet, Float rank) {
+}
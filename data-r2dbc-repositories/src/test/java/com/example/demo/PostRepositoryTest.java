@@ -1,5 +1,7 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.EntityCacheConfig;
+import com.example.r2dbc.support.EntityCacheManager;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,13 +25,16 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class PostRepositoryTest {
 
     @Configuration
-    @Import(value = {DatabaseConfig.class})
+    @Import(value = {DatabaseConfig.class, EntityCacheConfig.class})
     static class TestConfig {
     }
 
     @Autowired
     PostRepository posts;
 
+    @Autowired
+    EntityCacheManager entityCacheManager;
+
     @SneakyThrows
     @BeforeEach
     public void setup() {
@@ -71,6 +76,20 @@ public class PostRepositoryTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testSearch() {
+        var data = Post.of("Reactive programming with R2dbc", "R2dbc brings reactive APIs to relational databases");
+        var data1 = Post.of("Getting started with Spring", "Spring Boot makes it easy");
+        this.posts.saveAll(List.of(data, data1))
+                .thenMany(this.posts.search("reac", 10))
+                .as(StepVerifier::create)
+                .consumeNextWith(r -> {
+                    assertThat(r.title()).isEqualTo("Reactive programming with R2dbc");
+                    assertThat(r.snippet()).contains("<mark>");
+                })
+                .verifyComplete();
+    }
+
     @Test
     public void testInsertAndDelete() {
         var data = Post.of("test", "content");
@@ -79,5 +98,30 @@ public class PostRepositoryTest {
                 .as(StepVerifier::create)
                 .verifyComplete();
     }
-}
 
+    @Test
+    public void testCachedFindById() {
+        var saved = this.posts.save(Post.of("test", "content")).block();
+        var hits = this.entityCacheManager.stats().get("Post").hitCount();
+
+        this.posts.findById(saved.id())
+                .then(this.posts.findById(saved.id()))
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> assertThat(p.title()).isEqualTo("test"))
+                .verifyComplete();
+        assertThat(this.entityCacheManager.stats().get("Post").hitCount()).isEqualTo(hits + 1);
+
+        // the saved entity is evicted, the next findById reads the new version.
+        this.posts.findById(saved.id())
+                .flatMap(p -> this.posts.save(new Post(p.id(), "updated", p.content(), p.status(), p.tags(), p.version())))
+                .then(this.posts.findById(saved.id()))
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> assertThat(p.title()).isEqualTo("updated"))
+                .verifyComplete();
+
+        this.posts.deleteById(saved.id())
+                .then(this.posts.findById(saved.id()))
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+}
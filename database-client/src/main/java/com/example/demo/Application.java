@@ -1,33 +1,52 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.ColumnIndexRowMappers;
+import com.example.r2dbc.support.ColumnIndexRowMapping;
+import com.example.r2dbc.support.PostSearchQueries;
+import com.example.r2dbc.support.ReadWriteRoutingConnectionFactory;
+import com.example.r2dbc.support.ReadWriteRoutingTransactionManager;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
 import io.r2dbc.postgresql.codec.EnumCodec;
 import io.r2dbc.postgresql.extension.CodecRegistrar;
+import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.ConnectionFactory;
 import io.r2dbc.spi.Row;
 import io.r2dbc.spi.RowMetadata;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.*;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.connection.ConnectionFactoryUtils;
 import org.springframework.r2dbc.connection.TransactionAwareConnectionFactoryProxy;
 import org.springframework.r2dbc.connection.init.CompositeDatabasePopulator;
 import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
 import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.connection.init.ScriptUtils;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.ReactiveTransactionManager;
 import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.function.BiFunction;
 
@@ -78,25 +97,56 @@ class DatabaseConfig {
 
 
         // postgres
+        String host = env.getProperty("r2dbc.host", "localhost");
+        Integer port = env.getProperty("r2dbc.port", Integer.class);
+        var primary = postgresConnectionPool(env, host, port != null ? port : 3456);
+
+        // read replicas, eg. `r2dbc.replicas=replica1:5432,replica2:5432`
+        List<ConnectionFactory> replicas = Arrays.stream(env.getProperty("r2dbc.replicas", String[].class, new String[0]))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(hostAndPort -> {
+                    var parts = hostAndPort.split(":");
+                    return (ConnectionFactory) postgresConnectionPool(env, parts[0], parts.length > 1 ? Integer.parseInt(parts[1]) : 5432);
+                })
+                .toList();
+
+        return new ReadWriteRoutingConnectionFactory(
+                primary,
+                replicas,
+                env.getProperty("r2dbc.replicas.selection", ReadWriteRoutingConnectionFactory.Selection.class,
+                        ReadWriteRoutingConnectionFactory.Selection.ROUND_ROBIN),
+                Duration.parse(env.getProperty("r2dbc.replicas.maxLag", "PT5S")),
+                Duration.parse(env.getProperty("r2dbc.replicas.probeInterval", "PT5S"))
+        );
+    }
+
+    private static ConnectionPool postgresConnectionPool(Environment env, String host, int port) {
         CodecRegistrar codecRegistrar = EnumCodec.builder()
                 .withEnum("post_status", Post.Status.class)
                 .build();
-        String host = env.getProperty("r2dbc.host", "localhost");
-        Integer port = env.getProperty("r2dbc.port", Integer.class);
         String dbName = env.getProperty("r2dbc.databaseName", "testdb");
         String user = env.getProperty("r2dbc.username", "user");
         String password = env.getProperty("r2dbc.password", "password");
 
-        return new PostgresqlConnectionFactory(
+        var connectionFactory = new PostgresqlConnectionFactory(
                 PostgresqlConnectionConfiguration.builder()
                         .host(host)
-                        .port(port != null ? port : 3456)
+                        .port(port)
                         .database(dbName)
                         .username(user)
                         .password(password)
                         .codecRegistrar(codecRegistrar)
                         .build()
         );
+
+        // pool the connections, chunked batch operations acquire one connection per chunk.
+        return new ConnectionPool(
+                ConnectionPoolConfiguration.builder(connectionFactory)
+                        .initialSize(env.getProperty("r2dbc.pool.initialSize", Integer.class, 2))
+                        .maxSize(env.getProperty("r2dbc.pool.maxSize", Integer.class, 10))
+                        .build()
+        );
     }
 
     @Bean
@@ -115,7 +165,7 @@ class DatabaseConfig {
 
     @Bean
     ReactiveTransactionManager transactionManager(ConnectionFactory connectionFactory) {
-        return new R2dbcTransactionManager(connectionFactory);
+        return new ReadWriteRoutingTransactionManager(connectionFactory);
     }
 
     @Bean
@@ -131,6 +181,9 @@ class DatabaseConfig {
 
         CompositeDatabasePopulator populator = new CompositeDatabasePopulator();
         populator.addPopulators(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")));
+        var statusCounts = new ResourceDatabasePopulator(new ClassPathResource("schema-status-counts.sql"));
+        statusCounts.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+        populator.addPopulators(statusCounts);
         populator.addPopulators(new ResourceDatabasePopulator(new ClassPathResource("data.sql")));
         initializer.setDatabasePopulator(populator);
 
@@ -170,15 +223,16 @@ record Post(
         String title,
         String content,
         Status status,
-        List<String> tags
+        List<String> tags,
+        LocalDateTime createdAt
 ) {
 
     public static Post of(String title, String content) {
-        return new Post(null, title, content, Status.DRAFT, List.of("default"));
+        return new Post(null, title, content, Status.DRAFT, List.of("default"), null);
     }
 
     public static Post of(String title, String content, List<String> tags) {
-        return new Post(null, title, content, Status.DRAFT, tags);
+        return new Post(null, title, content, Status.DRAFT, tags, null);
     }
 
     enum Status {
@@ -187,45 +241,206 @@ record Post(
 
 }
 
+record UpsertResult(UUID id, boolean inserted) {
+}
+
+record SearchResult(UUID id, String title, String snippet, float rank) {
+}
+
+record TagCount(String tag, long count) {
+}
+
+// the position of a keyset scan, `token()` can be handed out to resume the scan later.
+record ScanCursor(LocalDateTime createdAt, UUID id) {
+
+    public static ScanCursor of(Post post) {
+        return new ScanCursor(post.createdAt(), post.id());
+    }
+
+    public static ScanCursor parse(String token) {
+        var decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf('|');
+        Assert.isTrue(separator > 0, "invalid cursor token: " + token);
+        return new ScanCursor(
+                LocalDateTime.parse(decoded.substring(0, separator)),
+                UUID.fromString(decoded.substring(separator + 1))
+        );
+    }
+
+    public String token() {
+        var value = this.createdAt + "|" + this.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
+
 @RequiredArgsConstructor
 @Component
 @Slf4j
 class PostRepository {
 
-    public static final BiFunction<Row, RowMetadata, Post> MAPPING_FUNCTION = (row, _) -> {
-        String[] tags = row.get("tags", String[].class);
+    public static final List<String> COLUMNS = List.of("id", "title", "content", "status", "tags", "created_at");
+
+    // positional mapping, the indexes of COLUMNS are resolved once per result by `ColumnIndexRowMappers`.
+    public static final ColumnIndexRowMapping<Post> MAPPING = (row, index) -> {
+        String[] tags = row.get(index[4], String[].class);
         return new Post(
-                row.get("id", UUID.class),
-                row.get("title", String.class),
-                row.get("content", String.class),
-                row.get("status", Post.Status.class),
-                tags == null ? Collections.emptyList() : Arrays.asList(tags)
+                row.get(index[0], UUID.class),
+                row.get(index[1], String.class),
+                row.get(index[2], String.class),
+                row.get(index[3], Post.Status.class),
+                tags == null ? List.of() : List.of(tags),
+                row.get(index[5], LocalDateTime.class)
         );
     };
 
+    static final int DEFAULT_CHUNK_SIZE = 500;
+    static final int DEFAULT_CONCURRENCY = 4;
+    static final int ID_CHUNK_SIZE = 1_000;
+
+    static final Duration TAG_HISTOGRAM_TTL = Duration.ofMinutes(1);
+    static final int TAG_HISTOGRAM_SIZE = 100;
+
+    private final ColumnIndexRowMappers rowMappers = new ColumnIndexRowMappers();
+
+    // one top TAG_HISTOGRAM_SIZE histogram is cached, every `limit` is sliced from it.
+    private final Mono<List<TagCount>> tagHistogram = Mono
+            .defer(() -> tagCounts(TAG_HISTOGRAM_SIZE).collectList())
+            // do not cache an error
+            .cache(_ -> TAG_HISTOGRAM_TTL, _ -> Duration.ZERO, () -> TAG_HISTOGRAM_TTL);
+
     private final DatabaseClient databaseClient;
 
+    private final TransactionalOperator transactionalOperator;
+
+    private BiFunction<Row, RowMetadata, Post> mapper() {
+        return this.rowMappers.of(COLUMNS, MAPPING);
+    }
+
     public Flux<Post> findByTitleContains(String name) {
+        var sql = "SELECT * FROM posts WHERE title LIKE :title";
         return this.databaseClient
-                .sql("SELECT * FROM posts WHERE title LIKE :title")
+                .sql(sql)
                 .bind("title", "%" + name + "%")
-                .map(MAPPING_FUNCTION)
+                .map(mapper())
+                .all();
+    }
+
+    // ranked full-text search by `PostSearchQueries.SEARCH`, eg. `reac spr` matches `reactive spring`.
+    public Flux<SearchResult> search(String query, int limit) {
+        Assert.isTrue(limit > 0, "limit should be greater than 0");
+        var tsQuery = PostSearchQueries.prefixTsQuery(query);
+        if (tsQuery.isEmpty()) {
+            return Flux.empty();
+        }
+        return this.databaseClient
+                .sql(PostSearchQueries.SEARCH)
+                .bind("tsQuery", tsQuery)
+                .bind("keyword", query.trim())
+                .bind("limit", limit)
+                .map((row, rowMetadata) -> new SearchResult(
+                        row.get("id", UUID.class),
+                        row.get("title", String.class),
+                        row.get("snippet", String.class),
+                        row.get("rank", Float.class)
+                ))
+                .all();
+    }
+
+    // the array operators are served by the GIN index on `tags`, the parameter is cast to the column type,
+    // or else it is bound as `text[]` and the index is not used.
+    public Flux<Post> findByAnyTag(List<String> tags) {
+        var sql = "SELECT * FROM posts WHERE tags && CAST(:tags AS varchar[])";
+        return this.databaseClient
+                .sql(sql)
+                .bind("tags", tags.toArray(new String[0]))
+                .map(mapper())
+                .all();
+    }
+
+    public Flux<Post> findByAllTags(List<String> tags) {
+        var sql = "SELECT * FROM posts WHERE tags @> CAST(:tags AS varchar[])";
+        return this.databaseClient
+                .sql(sql)
+                .bind("tags", tags.toArray(new String[0]))
+                .map(mapper())
+                .all();
+    }
+
+    public Mono<Long> countByTag(String tag) {
+        return this.databaseClient
+                .sql("SELECT count(*) AS cnt FROM posts WHERE tags @> CAST(:tags AS varchar[])")
+                .bind("tags", new String[]{tag})
+                .map((row, rowMetadata) -> row.get("cnt", Long.class))
+                .one();
+    }
+
+    // the histogram aggregates the whole table, the top TAG_HISTOGRAM_SIZE is cached for TAG_HISTOGRAM_TTL,
+    // a larger `limit` is rare and queried directly.
+    public Flux<TagCount> topTags(int limit) {
+        Assert.isTrue(limit > 0, "limit should be greater than 0");
+        if (limit > TAG_HISTOGRAM_SIZE) {
+            return tagCounts(limit);
+        }
+        return this.tagHistogram
+                .flatMapIterable(counts -> counts.subList(0, Math.min(limit, counts.size())));
+    }
+
+    private Flux<TagCount> tagCounts(int limit) {
+        return this.databaseClient
+                .sql("SELECT tag, count(*) AS cnt FROM posts, unnest(tags) AS tag GROUP BY tag ORDER BY cnt DESC, tag LIMIT :limit")
+                .bind("limit", limit)
+                .map((row, rowMetadata) -> new TagCount(row.get("tag", String.class), row.get("cnt", Long.class)))
                 .all();
     }
 
     public Flux<Post> findAll() {
+        var sql = "SELECT * FROM posts";
         return this.databaseClient
-                .sql("SELECT * FROM posts")
+                .sql(sql)
                 .filter((statement, executeFunction) -> statement.fetchSize(10).execute())
-                .map(MAPPING_FUNCTION)
+                .map(mapper())
                 .all();
     }
 
+    public Flux<Post> scan(String afterToken, int pageSize) {
+        return scan(afterToken == null ? null : ScanCursor.parse(afterToken), pageSize);
+    }
+
+    // keyset pagination on (created_at, id), every page is a short query on its own connection,
+    // the next page is only queried when the previous one is consumed by the downstream.
+    public Flux<Post> scan(ScanCursor after, int pageSize) {
+        Assert.isTrue(pageSize > 0, "pageSize should be greater than 0");
+        return scanPage(after, pageSize)
+                .expand(page -> page.size() < pageSize
+                        ? Mono.empty()
+                        : scanPage(ScanCursor.of(page.getLast()), pageSize)
+                )
+                // prefetch only one page ahead
+                .concatMapIterable(page -> page, 1);
+    }
+
+    private Mono<List<Post>> scanPage(ScanCursor after, int pageSize) {
+        var sql = after == null
+                ? "SELECT * FROM posts ORDER BY created_at, id LIMIT :size"
+                : "SELECT * FROM posts WHERE (created_at, id) > (:createdAt, :id) ORDER BY created_at, id LIMIT :size";
+        var spec = this.databaseClient.sql(sql).bind("size", pageSize);
+        if (after != null) {
+            spec = spec.bind("createdAt", after.createdAt()).bind("id", after.id());
+        }
+        return spec
+                .filter((statement, executeFunction) -> statement.fetchSize(pageSize).execute())
+                .map(mapper())
+                .all()
+                .collectList();
+    }
+
     // see:
     // https://stackoverflow.com/questions/64267699/spring-data-r2dbc-and-group-by
+    // the counts are read from the `post_status_counts` summary which is maintained by triggers,
+    // see schema-status-counts.sql and `PostStatusCountReconciler`.
     public Flux<Map<Object, Object>> countByStatus() {
         return this.databaseClient
-                .sql("SELECT count(*) as cnt, status FROM posts group by status")
+                .sql("SELECT cnt, status FROM post_status_counts WHERE cnt > 0")
                 .map((row, rowMetadata) -> {
                     Long cnt = row.get("cnt", Long.class);
                     Post.Status s = row.get("status", Post.Status.class);
@@ -236,10 +451,11 @@ class PostRepository {
     }
 
     public Mono<Post> findById(UUID id) {
+        var sql = "SELECT * FROM posts WHERE id=:id";
         return this.databaseClient
-                .sql("SELECT * FROM posts WHERE id=:id")
+                .sql(sql)
                 .bind("id", id)
-                .map(MAPPING_FUNCTION)
+                .map(mapper())
                 .one();
     }
 
@@ -263,31 +479,100 @@ class PostRepository {
     // https://stackoverflow.com/questions/62514094/how-to-execute-multiple-inserts-in-batch-in-r2dbc
     public Flux<UUID> saveAll(List<Post> data) {
         Assert.notEmpty(data, "saving data can be empty");
-        return this.databaseClient.inConnectionMany(connection -> {
-
-            var statement = connection
-                    .createStatement("INSERT INTO  posts (title, content, status, tags) VALUES ($1, $2, $3, $4)")
-                    .returnGeneratedValues("id");
-
-            for (int i = 0; i < data.size() - 1; i++) {
-                Post p = data.get(i);
-                statement.bind(0, p.title())
-                        .bind(1, p.content())
-                        .bind(2, p.status())
-                        .bind(3, p.tags().toArray(new String[0]))
-                        .add();
-            }
+        return this.databaseClient.inConnectionMany(connection -> insertChunk(connection, data));
+    }
 
-            // for the last item, do not call `add`
-            var lastItem = data.getLast();
-            statement.bind(0, lastItem.title())
-                    .bind(1, lastItem.content())
-                    .bind(2, lastItem.status())
-                    .bind(3, lastItem.tags().toArray(new String[0]));
+    public Flux<UUID> saveAll(Publisher<Post> data) {
+        return saveAll(data, DEFAULT_CHUNK_SIZE, DEFAULT_CONCURRENCY);
+    }
 
-            return Flux.from(statement.execute())
-                    .flatMap(result -> result.map((row, rowMetadata) -> row.get("id", UUID.class)));
-        });
+    // cut the stream into chunks, every chunk is inserted in a single batch statement on its own connection,
+    // at most `concurrency` chunks are in flight, the generated ids are emitted in the order of the input.
+    public Flux<UUID> saveAll(Publisher<Post> data, int chunkSize, int concurrency) {
+        Assert.isTrue(chunkSize > 0, "chunkSize should be greater than 0");
+        Assert.isTrue(concurrency > 0, "concurrency should be greater than 0");
+        return Flux.from(data)
+                .buffer(chunkSize)
+                .flatMapSequential(
+                        chunk -> this.databaseClient.inConnectionMany(connection -> insertChunk(connection, chunk)),
+                        concurrency
+                );
+    }
+
+    private Flux<UUID> insertChunk(Connection connection, List<Post> data) {
+        var statement = connection
+                .createStatement("INSERT INTO  posts (title, content, status, tags) VALUES ($1, $2, $3, $4)")
+                .returnGeneratedValues("id");
+
+        for (int i = 0; i < data.size() - 1; i++) {
+            Post p = data.get(i);
+            statement.bind(0, p.title())
+                    .bind(1, p.content())
+                    .bind(2, p.status())
+                    .bind(3, p.tags().toArray(new String[0]))
+                    .add();
+        }
+
+        // for the last item, do not call `add`
+        var lastItem = data.getLast();
+        statement.bind(0, lastItem.title())
+                .bind(1, lastItem.content())
+                .bind(2, lastItem.status())
+                .bind(3, lastItem.tags().toArray(new String[0]));
+
+        return Flux.from(statement.execute())
+                .flatMap(result -> result.map((row, rowMetadata) -> row.get("id", UUID.class)));
+    }
+
+    public Flux<UpsertResult> upsertAll(Publisher<Post> data) {
+        return upsertAll(data, DEFAULT_CHUNK_SIZE, DEFAULT_CONCURRENCY);
+    }
+
+    // every chunk is rendered into one multi-row `INSERT ... ON CONFLICT (id) DO UPDATE` statement,
+    // `xmax = 0` in the RETURNING clause tells a freshly inserted row from an updated one.
+    public Flux<UpsertResult> upsertAll(Publisher<Post> data, int chunkSize, int concurrency) {
+        Assert.isTrue(chunkSize > 0, "chunkSize should be greater than 0");
+        Assert.isTrue(concurrency > 0, "concurrency should be greater than 0");
+        return Flux.from(data)
+                .buffer(chunkSize)
+                .flatMapSequential(
+                        chunk -> this.databaseClient.inConnectionMany(connection -> upsertChunk(connection, chunk)),
+                        concurrency
+                );
+    }
+
+    private Flux<UpsertResult> upsertChunk(Connection connection, List<Post> chunk) {
+        // a row can not be affected twice in one statement, the last one wins.
+        var rows = new LinkedHashMap<UUID, Post>();
+        chunk.forEach(p -> rows.put(p.id() != null ? p.id() : UUID.randomUUID(), p));
+
+        var sql = new StringBuilder("INSERT INTO posts (id, title, content, status, tags) VALUES ");
+        for (int i = 0; i < rows.size(); i++) {
+            int n = i * 5;
+            sql.append(i == 0 ? "" : ", ")
+                    .append("($").append(n + 1).append(", $").append(n + 2).append(", $").append(n + 3)
+                    .append(", $").append(n + 4).append(", $").append(n + 5).append(")");
+        }
+        sql.append(" ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, content = EXCLUDED.content,")
+                .append(" status = EXCLUDED.status, tags = EXCLUDED.tags")
+                .append(" RETURNING id, (xmax = 0) AS inserted");
+
+        var statement = connection.createStatement(sql.toString());
+        int i = 0;
+        for (var entry : rows.entrySet()) {
+            Post p = entry.getValue();
+            statement.bind(i++, entry.getKey())
+                    .bind(i++, p.title())
+                    .bind(i++, p.content())
+                    .bind(i++, p.status())
+                    .bind(i++, p.tags().toArray(new String[0]));
+        }
+
+        return Flux.from(statement.execute())
+                .flatMap(result -> result.map((row, rowMetadata) -> new UpsertResult(
+                        row.get("id", UUID.class),
+                        Boolean.TRUE.equals(row.get("inserted", Boolean.class))
+                )));
     }
 
     public Mono<Long> update(Post p) {
@@ -311,11 +596,36 @@ class PostRepository {
                 .rowsUpdated();
     }
 
+    // bind the ids as a single uuid[] parameter, the SQL text is the same for any number of ids,
+    // larger id sets are split into chunks and executed with bounded concurrency.
+    public Flux<Post> findAllById(List<UUID> ids) {
+        var sql = "SELECT * FROM posts WHERE id = ANY(:ids)";
+        return chunked(ids)
+                .flatMap(chunk -> this.databaseClient.sql(sql)
+                                .bind("ids", chunk)
+                                .map(mapper())
+                                .all(),
+                        DEFAULT_CONCURRENCY
+                );
+    }
+
+    // the chunks are deleted one by one in a transaction, a failed chunk rolls back the chunks deleted before it.
     public Mono<Long> deleteAllById(List<UUID> ids) {
-        return this.databaseClient.sql("DELETE FROM posts WHERE id in (:ids)")
-                .bind("ids", ids)
-                .fetch()
-                .rowsUpdated();
+        return chunked(ids)
+                .concatMap(chunk -> this.databaseClient.sql("DELETE FROM posts WHERE id = ANY(:ids)")
+                        .bind("ids", chunk)
+                        .fetch()
+                        .rowsUpdated()
+                )
+                .reduce(0L, Long::sum)
+                .as(this.transactionalOperator::transactional);
+    }
+
+    private static Flux<UUID[]> chunked(List<UUID> ids) {
+        Assert.notNull(ids, "ids can not be null");
+        return Flux.fromIterable(ids)
+                .buffer(ID_CHUNK_SIZE)
+                .map(chunk -> chunk.toArray(new UUID[0]));
     }
 
     public Mono<Long> deleteAll() {
@@ -323,4 +633,170 @@ class PostRepository {
                 .fetch()
                 .rowsUpdated();
     }
-}
\ No newline at end of file
+}
+
+record StatusCountDrift(Post.Status status, long recorded, long actual) {
+}
+
+// re-derives `post_status_counts` from `posts` periodically, fixes and reports the drifted counts.
+// the summary table is locked while counting, writers touching the counts wait until it is done.
+@Component
+@Slf4j
+class PostStatusCountReconciler implements DisposableBean {
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final Duration interval;
+    private Disposable task;
+
+    PostStatusCountReconciler(DatabaseClient databaseClient,
+                              TransactionalOperator transactionalOperator,
+                              Environment env) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.interval = Duration.parse(env.getProperty("posts.status-counts.reconcile-interval", "PT10M"));
+    }
+
+    @EventListener(value = ContextRefreshedEvent.class)
+    public void start() {
+        if (this.task == null) {
+            this.task = Flux.interval(this.interval, this.interval)
+                    .concatMap(_ -> reconcile().onErrorResume(error -> {
+                        log.warn("failed to reconcile post status counts: {}", error.getMessage());
+                        return Flux.empty();
+                    }))
+                    .subscribe();
+        }
+    }
+
+    public Flux<StatusCountDrift> reconcile() {
+        return this.databaseClient.sql("LOCK TABLE post_status_counts IN EXCLUSIVE MODE")
+                .then()
+                .thenMany(this.databaseClient
+                        .sql("""
+                                WITH actual AS (
+                                    SELECT s.status, count(p.id) AS cnt
+                                    FROM unnest(enum_range(NULL::post_status)) s(status) LEFT JOIN posts p ON p.status = s.status
+                                    GROUP BY s.status
+                                ), drift AS (
+                                    SELECT a.status, coalesce(c.cnt, 0) AS recorded, a.cnt AS actual
+                                    FROM actual a LEFT JOIN post_status_counts c ON c.status = a.status
+                                    WHERE a.cnt <> coalesce(c.cnt, 0)
+                                ), fixed AS (
+                                    INSERT INTO post_status_counts (status, cnt) SELECT status, actual FROM drift
+                                    ON CONFLICT (status) DO UPDATE SET cnt = EXCLUDED.cnt
+                                )
+                                SELECT status, recorded, actual FROM drift
+                                """)
+                        .map((row, rowMetadata) -> new StatusCountDrift(
+                                row.get("status", Post.Status.class),
+                                row.get("recorded", Long.class),
+                                row.get("actual", Long.class)
+                        ))
+                        .all()
+                )
+                .as(this.transactionalOperator::transactional)
+                .doOnNext(drift -> log.warn("post status count drifted: {}", drift));
+    }
+
+    @Override
+    public void destroy() {
+        if (this.task != null) {
+            this.task.dispose();
+        }
+    }
+}
+
+record CopyResult(long rows, Duration elapsed) {
+
+    public long rowsPerSecond() {
+        long millis = elapsed.toMillis();
+        return millis == 0 ? rows : rows * 1000 / millis;
+    }
+}
+
+// see: https://www.postgresql.org/docs/current/sql-copy.html
+// streams posts through the COPY protocol in text format, rows are encoded in small buffers
+// on demand of the driver, so the whole data set is never held in memory.
+@RequiredArgsConstructor
+@Component
+@Slf4j
+class PostBulkLoader {
+
+    static final String COPY_SQL = "COPY posts (title, content, status, tags) FROM STDIN";
+    static final int ROWS_PER_BUFFER = 256;
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<CopyResult> copyIn(Publisher<Post> data) {
+        return this.databaseClient
+                .inConnection(connection -> {
+                    if (!(ConnectionFactoryUtils.getTargetConnection(connection) instanceof PostgresqlConnection pgConnection)) {
+                        return Mono.error(new UnsupportedOperationException("COPY is only supported by PostgreSQL connections"));
+                    }
+
+                    long start = System.nanoTime();
+                    var buffers = Flux.from(data)
+                            .buffer(ROWS_PER_BUFFER)
+                            .map(PostBulkLoader::encode);
+                    return pgConnection.copyIn(COPY_SQL, buffers)
+                            .map(rows -> new CopyResult(rows, Duration.ofNanos(System.nanoTime() - start)));
+                })
+                .doOnNext(result -> log.info("copied {} rows in {} ms ({} rows/s)",
+                        result.rows(), result.elapsed().toMillis(), result.rowsPerSecond()));
+    }
+
+    static ByteBuf encode(List<Post> rows) {
+        var sb = new StringBuilder(rows.size() * 128);
+        for (Post p : rows) {
+            appendField(sb, p.title()).append('\t');
+            appendField(sb, p.content()).append('\t');
+            appendField(sb, p.status() == null ? null : p.status().name()).append('\t');
+            appendField(sb, p.tags() == null ? null : arrayLiteral(p.tags())).append('\n');
+        }
+        return Unpooled.wrappedBuffer(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // text format: NULL is `\N`, backslash and the delimiter/line-break characters are escaped.
+    static StringBuilder appendField(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb.append("\\N");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                default -> sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    // array literal, eg. {"spring","r2dbc"}, every element is quoted, `"` and `\` are escaped inside quotes.
+    static String arrayLiteral(List<String> values) {
+        var sb = new StringBuilder("{");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String v = values.get(i);
+            if (v == null) {
+                sb.append("NULL");
+                continue;
+            }
+            sb.append('"');
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\');
+                }
+                sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,60 @@
+-- `post_status_counts` is maintained incrementally by statement level triggers on `posts`, the transition
+-- tables are aggregated per statement, so a bulk insert or COPY touches every summary row only once.
+-- this script contains function bodies, it is executed as a single statement.
+CREATE TABLE IF NOT EXISTS post_status_counts (
+    status post_status PRIMARY KEY,
+    cnt BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO post_status_counts (status, cnt)
+SELECT s.status, count(p.id)
+FROM unnest(enum_range(NULL::post_status)) s(status) LEFT JOIN posts p ON p.status = s.status
+GROUP BY s.status
+ON CONFLICT (status) DO UPDATE SET cnt = EXCLUDED.cnt;
+
+CREATE OR REPLACE FUNCTION maintain_post_status_counts() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO post_status_counts (status, cnt)
+        SELECT status, count(*) FROM new_rows WHERE status IS NOT NULL GROUP BY status
+        ON CONFLICT (status) DO UPDATE SET cnt = post_status_counts.cnt + EXCLUDED.cnt;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO post_status_counts (status, cnt)
+        SELECT status, -count(*) FROM old_rows WHERE status IS NOT NULL GROUP BY status
+        ON CONFLICT (status) DO UPDATE SET cnt = post_status_counts.cnt + EXCLUDED.cnt;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO post_status_counts (status, cnt)
+        SELECT status, sum(delta) FROM (
+            SELECT status, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT status, -1 AS delta FROM old_rows
+        ) changes
+        WHERE status IS NOT NULL
+        GROUP BY status
+        HAVING sum(delta) <> 0
+        ON CONFLICT (status) DO UPDATE SET cnt = post_status_counts.cnt + EXCLUDED.cnt;
+    ELSE
+        UPDATE post_status_counts SET cnt = 0;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS posts_status_counts_insert ON posts;
+CREATE TRIGGER posts_status_counts_insert AFTER INSERT ON posts
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION maintain_post_status_counts();
+
+DROP TRIGGER IF EXISTS posts_status_counts_update ON posts;
+CREATE TRIGGER posts_status_counts_update AFTER UPDATE ON posts
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION maintain_post_status_counts();
+
+DROP TRIGGER IF EXISTS posts_status_counts_delete ON posts;
+CREATE TRIGGER posts_status_counts_delete AFTER DELETE ON posts
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION maintain_post_status_counts();
+
+DROP TRIGGER IF EXISTS posts_status_counts_truncate ON posts;
+CREATE TRIGGER posts_status_counts_truncate AFTER TRUNCATE ON posts
+    FOR EACH STATEMENT EXECUTE FUNCTION maintain_post_status_counts();
@@ -7,7 +7,26 @@ CREATE TABLE IF NOT EXISTS posts (
      title VARCHAR(255),
      content VARCHAR(255),
      tags VARCHAR[] DEFAULT '{}', -- Default to an empty array
-     status post_status default 'DRAFT'
+     status post_status default 'DRAFT',
+     created_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
  );
 
-ALTER TABLE posts ADD CONSTRAINT posts_pk PRIMARY KEY (id);
\ No newline at end of file
+ALTER TABLE posts ADD CONSTRAINT posts_pk PRIMARY KEY (id);
+
+-- keyset pagination of `PostRepository.scan`
+CREATE INDEX IF NOT EXISTS idx_posts_created_at_id ON posts (created_at, id);
+
+-- tag containment queries, `tags && ...` and `tags @> ...`
+CREATE INDEX IF NOT EXISTS idx_posts_tags ON posts USING GIN (tags);
+
+-- full-text and trigram search of `PostRepository.search`, the trigram index also serves `title LIKE '%x%'`.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(content, '')), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_posts_title_trgm ON posts USING GIN (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_posts_search_vector ON posts USING GIN (search_vector);
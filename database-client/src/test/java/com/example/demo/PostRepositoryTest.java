@@ -1,5 +1,7 @@
 package com.example.demo;
 
+import com.example.r2dbc.support.ReadWriteRoutingConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
@@ -7,10 +9,16 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -23,13 +31,28 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class PostRepositoryTest {
 
     @Configuration
-    @Import(value = {DatabaseConfig.class, PostRepository.class})
+    @Import(value = {DatabaseConfig.class, PostRepository.class, PostBulkLoader.class, PostStatusCountReconciler.class})
     static class TestConfig {
     }
 
     @Autowired
     PostRepository posts;
 
+    @Autowired
+    PostBulkLoader bulkLoader;
+
+    @Autowired
+    PostStatusCountReconciler reconciler;
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    @Autowired
+    ReactiveTransactionManager transactionManager;
+
     @SneakyThrows
     @BeforeEach
     public void setup() {
@@ -63,6 +86,234 @@ public class PostRepositoryTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testSaveAllFromPublisher() {
+        var data = Flux.range(1, 1_000)
+                .map(i -> Post.of("test" + i, "content" + i, List.of("bulk")));
+
+        posts.saveAll(data, 100, 2)
+                .as(StepVerifier::create)
+                .expectNextCount(1_000)
+                .verifyComplete();
+
+        posts.findAll()
+                .as(StepVerifier::create)
+                .expectNextCount(1_000)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFindAllByIdAndDeleteAllById() {
+        var ids = posts.saveAll(Flux.range(1, 2_500).map(i -> Post.of("test" + i, "content" + i)))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        posts.findAllById(ids)
+                .as(StepVerifier::create)
+                .expectNextCount(2_500)
+                .verifyComplete();
+
+        posts.deleteAllById(ids)
+                .as(StepVerifier::create)
+                .expectNext(2_500L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testDeleteAllByIdRollsBackOnFailedChunk() {
+        var ids = posts.saveAll(Flux.range(1, 1_500).map(i -> Post.of(i == 1_500 ? "undeletable" : "test" + i, "content" + i)))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        // the second chunk fails on the last post.
+        var createTrigger = databaseClient.sql("""
+                CREATE OR REPLACE FUNCTION reject_undeletable_post() RETURNS trigger AS $$
+                BEGIN
+                    RAISE EXCEPTION 'post % can not be deleted', OLD.id;
+                END;
+                $$ LANGUAGE plpgsql
+                """).then()
+                .then(databaseClient.sql("""
+                        CREATE TRIGGER reject_undeletable_post BEFORE DELETE ON posts
+                        FOR EACH ROW WHEN (OLD.title = 'undeletable') EXECUTE FUNCTION reject_undeletable_post()
+                        """).then());
+        var dropTrigger = databaseClient.sql("DROP TRIGGER IF EXISTS reject_undeletable_post ON posts").then();
+
+        try {
+            createTrigger
+                    .then(posts.deleteAllById(ids))
+                    .as(StepVerifier::create)
+                    .verifyError();
+        } finally {
+            dropTrigger.block(Duration.ofSeconds(5));
+        }
+
+        posts.findAllById(ids)
+                .as(StepVerifier::create)
+                .expectNextCount(1_500)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testUpsertAll() {
+        var id = posts.save(Post.of("test", "content")).block(Duration.ofSeconds(10));
+        var existing = new Post(id, "updated", "updated content", Post.Status.PUBLISHED, List.of("upsert"), null);
+        var created = Post.of("new", "new content");
+
+        posts.upsertAll(Flux.just(existing, created))
+                .as(StepVerifier::create)
+                .consumeNextWith(r -> {
+                    assertThat(r.id()).isEqualTo(id);
+                    assertThat(r.inserted()).isFalse();
+                })
+                .consumeNextWith(r -> assertThat(r.inserted()).isTrue())
+                .verifyComplete();
+
+        posts.findById(id)
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> {
+                    assertThat(p.title()).isEqualTo("updated");
+                    assertThat(p.status()).isEqualTo(Post.Status.PUBLISHED);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testStatusCounts() {
+        var ids = posts.saveAll(List.of(Post.of("test", "content"), Post.of("test1", "content1")))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        var published = new Post(ids.getFirst(), "test", "content", Post.Status.PUBLISHED, List.of(), null);
+
+        posts.update(published)
+                .thenMany(posts.countByStatus())
+                .collectMap(r -> r.get("status"), r -> r.get("cnt"))
+                .as(StepVerifier::create)
+                .consumeNextWith(counts -> assertThat(counts)
+                        .containsEntry(Post.Status.DRAFT, 1L)
+                        .containsEntry(Post.Status.PUBLISHED, 1L)
+                )
+                .verifyComplete();
+
+        reconciler.reconcile()
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testTags() {
+        posts.saveAll(List.of(
+                        Post.of("test", "content", List.of("spring", "r2dbc")),
+                        Post.of("test1", "content1", List.of("spring")),
+                        Post.of("test2", "content2", List.of("jooq"))
+                ))
+                .then()
+                .block(Duration.ofSeconds(10));
+
+        posts.findByAnyTag(List.of("r2dbc", "jooq"))
+                .as(StepVerifier::create)
+                .expectNextCount(2)
+                .verifyComplete();
+
+        posts.findByAllTags(List.of("spring", "r2dbc"))
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> assertThat(p.title()).isEqualTo("test"))
+                .verifyComplete();
+
+        posts.countByTag("spring")
+                .as(StepVerifier::create)
+                .expectNext(2L)
+                .verifyComplete();
+
+        posts.topTags(1)
+                .as(StepVerifier::create)
+                .expectNext(new TagCount("spring", 2L))
+                .verifyComplete();
+
+        // sliced from the same cached histogram
+        posts.topTags(3)
+                .as(StepVerifier::create)
+                .expectNext(new TagCount("spring", 2L), new TagCount("jooq", 1L), new TagCount("r2dbc", 1L))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testSearch() {
+        posts.saveAll(List.of(
+                        Post.of("Reactive programming with R2dbc", "R2dbc brings reactive APIs to relational databases"),
+                        Post.of("Getting started with Spring", "Spring Boot makes it easy")
+                ))
+                .then()
+                .block(Duration.ofSeconds(10));
+
+        posts.search("reac", 10)
+                .as(StepVerifier::create)
+                .consumeNextWith(r -> {
+                    assertThat(r.title()).isEqualTo("Reactive programming with R2dbc");
+                    assertThat(r.snippet()).contains("<mark>");
+                    assertThat(r.rank()).isGreaterThan(0f);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testScan() {
+        posts.saveAll(Flux.range(1, 25).map(i -> Post.of("scan" + i, "content" + i)))
+                .then()
+                .block(Duration.ofSeconds(10));
+
+        var firstPage = posts.scan((String) null, 10).take(10).collectList().block(Duration.ofSeconds(10));
+        assertThat(firstPage).hasSize(10);
+
+        var token = ScanCursor.of(firstPage.getLast()).token();
+        posts.scan(token, 10)
+                .as(StepVerifier::create)
+                .expectNextCount(15)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCopyIn() {
+        var data = Flux.range(1, 1_000)
+                .map(i -> Post.of("copy" + i, "line\tbreak\n\\" + i, List.of("a \"quoted\" tag", "back\\slash")));
+
+        bulkLoader.copyIn(data)
+                .as(StepVerifier::create)
+                .consumeNextWith(r -> assertThat(r.rows()).isEqualTo(1_000))
+                .verifyComplete();
+
+        posts.findByTitleContains("copy1000")
+                .as(StepVerifier::create)
+                .consumeNextWith(p -> {
+                    assertThat(p.content()).isEqualTo("line\tbreak\n\\1000");
+                    assertThat(p.status()).isEqualTo(Post.Status.DRAFT);
+                    assertThat(p.tags()).containsExactly("a \"quoted\" tag", "back\\slash");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testReadOnlyRouting() {
+        var routing = (ReadWriteRoutingConnectionFactory) connectionFactory;
+        routing.determineCurrentLookupKey()
+                .as(StepVerifier::create)
+                .expectNext(ReadWriteRoutingConnectionFactory.PRIMARY)
+                .verifyComplete();
+        routing.determineCurrentLookupKey()
+                .contextWrite(ReadWriteRoutingConnectionFactory.readOnly())
+                .as(StepVerifier::create)
+                .expectNext("replica-0")
+                .verifyComplete();
+
+        var definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(true);
+        this.posts.save(Post.of("test", "content"))
+                .thenMany(TransactionalOperator.create(transactionManager, definition).transactional(this.posts.findAll()))
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
     //see: https://stackoverflow.com/questions/64374730/java-r2dbc-client-execute-sql-and-use-returned-id-for-next-execute/64409363#64409363
     @Test
     public void testInsertAndQuery() {
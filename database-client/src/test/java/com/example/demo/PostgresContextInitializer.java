@@ -34,7 +34,9 @@ class PostgresContextInitializer implements ApplicationContextInitializer<Config
                                         "r2dbc.port", postgreSQLContainer.getFirstMappedPort(),
                                         "r2dbc.databaseName", postgreSQLContainer.getDatabaseName(),
                                         "r2dbc.username", postgreSQLContainer.getUsername(),
-                                        "r2dbc.password",  postgreSQLContainer.getPassword()
+                                        "r2dbc.password",  postgreSQLContainer.getPassword(),
+                                        // the same database stands in for a read replica
+                                        "r2dbc.replicas", postgreSQLContainer.getHost() + ":" + postgreSQLContainer.getFirstMappedPort()
                                 )
                         )
                 );
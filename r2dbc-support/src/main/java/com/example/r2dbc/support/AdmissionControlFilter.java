@@ -0,0 +1,241 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Rejects a request early with 503 and {@code Retry-After} instead of letting it queue for a connection:
+ * every route group has a concurrency budget, and the low priority groups, eg. the list endpoints, are
+ * shed while the connection pool has too many pending acquisitions or the recent latency is too high.
+ * <p>
+ * The recent latency is an exponentially weighted moving average of the completed requests, it decays
+ * by half every {@code latencyHalfLife} without new samples, so a shed group is admitted again after a
+ * spike even when no other request completes in the meantime. The streaming responses, eg. NDJSON and
+ * SSE, and the {@link RouteGroup#unmetered unmetered} groups are not sampled, their duration is not a latency.
+ */
+@Slf4j
+public class AdmissionControlFilter implements WebFilter {
+
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+    private final List<RouteGroup> groups;
+    private final RouteGroup defaultGroup;
+    private final ConnectionFactory connectionFactory;
+    private final int maxPendingAcquire;
+    private final Duration maxLatency;
+    private final Duration retryAfter;
+    private final Duration latencyHalfLife;
+    private final LongSupplier nanoClock;
+    // the moving average of the request latency in nanos as the bits of a double, NaN until the first sample,
+    // and when it was last updated. they are read without a lock, a reader racing an update may decay the new
+    // average from the old time or the reverse, it is off by one sample at most.
+    private final AtomicLong recentLatency = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+    private final AtomicLong recentLatencyUpdatedAt = new AtomicLong();
+
+    public AdmissionControlFilter(List<RouteGroup> groups, RouteGroup defaultGroup, ConnectionFactory connectionFactory,
+                                  int maxPendingAcquire, Duration maxLatency, Duration retryAfter, Duration latencyHalfLife) {
+        this(groups, defaultGroup, connectionFactory, maxPendingAcquire, maxLatency, retryAfter, latencyHalfLife, System::nanoTime);
+    }
+
+    AdmissionControlFilter(List<RouteGroup> groups, RouteGroup defaultGroup, ConnectionFactory connectionFactory,
+                           int maxPendingAcquire, Duration maxLatency, Duration retryAfter, Duration latencyHalfLife,
+                           LongSupplier nanoClock) {
+        this.groups = groups;
+        this.defaultGroup = defaultGroup;
+        this.connectionFactory = connectionFactory;
+        this.maxPendingAcquire = maxPendingAcquire;
+        this.maxLatency = maxLatency;
+        this.retryAfter = retryAfter;
+        this.latencyHalfLife = latencyHalfLife;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var group = this.groups.stream()
+                .filter(g -> g.matches(exchange.getRequest()))
+                .findFirst()
+                .orElse(this.defaultGroup);
+        if (group.lowPriority() && isSaturated()) {
+            return reject(exchange, group, "saturated");
+        }
+        if (!group.tryAcquire()) {
+            return reject(exchange, group, "concurrency budget exhausted");
+        }
+        var start = this.nanoClock.getAsLong();
+        return chain.filter(exchange)
+                .doFinally(_ -> {
+                    group.release();
+                    if (group.sampled() && !isStreaming(exchange)) {
+                        recordLatency(this.nanoClock.getAsLong() - start);
+                    }
+                });
+    }
+
+    Duration recentLatency() {
+        var latency = Double.longBitsToDouble(this.recentLatency.get());
+        if (Double.isNaN(latency)) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((long) decay(latency, this.recentLatencyUpdatedAt.get(), this.nanoClock.getAsLong()));
+    }
+
+    void recordLatency(long latency) {
+        var now = this.nanoClock.getAsLong();
+        while (true) {
+            var currentBits = this.recentLatency.get();
+            var current = Double.longBitsToDouble(currentBits);
+            var updated = Double.isNaN(current)
+                    ? latency
+                    : decay(current, this.recentLatencyUpdatedAt.get(), now) * 0.8 + latency * 0.2;
+            if (this.recentLatency.compareAndSet(currentBits, Double.doubleToRawLongBits(updated))) {
+                this.recentLatencyUpdatedAt.accumulateAndGet(now, Math::max);
+                return;
+            }
+        }
+    }
+
+    private double decay(double latency, long updatedAt, long now) {
+        var halfLives = (double) Math.max(0, now - updatedAt) / this.latencyHalfLife.toNanos();
+        return latency * Math.pow(0.5, halfLives);
+    }
+
+    private boolean isSaturated() {
+        var pending = poolMetrics(this.connectionFactory).map(PoolMetrics::pendingAcquireSize).orElse(0);
+        return pending >= this.maxPendingAcquire || recentLatency().compareTo(this.maxLatency) >= 0;
+    }
+
+    private static boolean isStreaming(ServerWebExchange exchange) {
+        var contentType = exchange.getResponse().getHeaders().getContentType();
+        return contentType != null && STREAMING_MEDIA_TYPES.stream().anyMatch(contentType::isCompatibleWith);
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, RouteGroup group, String reason) {
+        log.debug("reject {} {}, route group {}: {}", exchange.getRequest().getMethod(), exchange.getRequest().getPath(), group.name(), reason);
+        var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, this.retryAfter.toSeconds())));
+        return response.setComplete();
+    }
+
+    private static Optional<PoolMetrics> poolMetrics(ConnectionFactory connectionFactory) {
+        var current = connectionFactory;
+        while (true) {
+            if (current instanceof ConnectionPool pool) {
+                return pool.getMetrics();
+            }
+            if (current instanceof Wrapped<?> wrapped && wrapped.unwrap() instanceof ConnectionFactory unwrapped) {
+                current = unwrapped;
+            } else {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * The requests matching {@code method}(any if null) and one of {@code patterns} share {@code maxConcurrency} slots,
+     * and their latency is sampled if {@code sampled}.
+     */
+    public static final class RouteGroup {
+        private final String name;
+        private final boolean lowPriority;
+        private final int maxConcurrency;
+        private final HttpMethod method;
+        private final List<PathPattern> patterns;
+        private final boolean sampled;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private RouteGroup(String name, boolean lowPriority, int maxConcurrency, HttpMethod method, List<PathPattern> patterns, boolean sampled) {
+            this.name = name;
+            this.lowPriority = lowPriority;
+            this.maxConcurrency = maxConcurrency;
+            this.method = method;
+            this.patterns = patterns;
+            this.sampled = sampled;
+        }
+
+        public static RouteGroup of(String name, boolean lowPriority, int maxConcurrency, HttpMethod method, String... patterns) {
+            return new RouteGroup(name, lowPriority, maxConcurrency, method, parse(patterns), true);
+        }
+
+        // never shed nor limited, and not sampled, eg. the probes and the metrics.
+        public static RouteGroup unmetered(String name, String... patterns) {
+            return new RouteGroup(name, false, Integer.MAX_VALUE, null, parse(patterns), false);
+        }
+
+        private static List<PathPattern> parse(String... patterns) {
+            return Arrays.stream(patterns).map(PathPatternParser.defaultInstance::parse).toList();
+        }
+
+        public String name() {
+            return this.name;
+        }
+
+        public boolean lowPriority() {
+            return this.lowPriority;
+        }
+
+        public int maxConcurrency() {
+            return this.maxConcurrency;
+        }
+
+        public boolean sampled() {
+            return this.sampled;
+        }
+
+        /**
+         * The admitted requests of this group which are not completed yet.
+         */
+        public int inFlight() {
+            return this.inFlight.get();
+        }
+
+        boolean matches(ServerHttpRequest request) {
+            return (this.method == null || this.method.equals(request.getMethod()))
+                    && this.patterns.stream().anyMatch(p -> p.matches(request.getPath().pathWithinApplication()));
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                var current = this.inFlight.get();
+                if (current >= this.maxConcurrency) {
+                    return false;
+                }
+                if (this.inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            this.inFlight.decrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return "RouteGroup[" + this.name + ", inFlight=" + this.inFlight.get() + "/" + this.maxConcurrency + "]";
+        }
+    }
+}
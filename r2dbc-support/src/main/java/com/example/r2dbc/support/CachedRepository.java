@@ -0,0 +1,28 @@
+package com.example.r2dbc.support;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opts a repository in the entity cache of {@link EntityCacheManager}, {@code findById} is then served
+ * from the cache, and the cached entity is evicted when it is saved or deleted.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CachedRepository {
+
+    /**
+     * The maximum number of cached entities, the least valuable ones(W-TinyLFU) are evicted first.
+     */
+    long maximumSize() default 10_000;
+
+    /**
+     * How long an entity is cached after it is loaded, in ISO-8601 format. It bounds the staleness of the
+     * entities changed by other instances or by statements which do not go through the entity callbacks.
+     */
+    String expireAfterWrite() default "PT10M";
+}
@@ -0,0 +1,75 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * A reusable row mapper factory, eg. {@code databaseClient.sql(sql).map(rowMappers.of(columns, mapping))}.
+ * <p>
+ * Instead of resolving every column by name on every row, the column positions are resolved from the
+ * {@link RowMetadata} once per result, and shared by the results of the same columns, keyed by the requested and
+ * the result columns. A mapper is created per execution, the results running concurrently do not share it.
+ */
+public class ColumnIndexRowMappers {
+
+    private record Key(List<String> requested, List<String> result) {
+    }
+
+    private final Map<Key, int[]> resolved = new ConcurrentHashMap<>();
+
+    public <T> BiFunction<Row, RowMetadata, T> of(List<String> columns, ColumnIndexRowMapping<T> mapping) {
+        return new ColumnIndexRowMapper<>(columns, mapping);
+    }
+
+    private int[] resolve(List<String> columns, RowMetadata metadata) {
+        var names = metadata.getColumnMetadatas().stream().map(ColumnMetadata::getName).toList();
+        return this.resolved.computeIfAbsent(new Key(columns, names), key -> {
+            int[] index = new int[key.requested().size()];
+            for (int i = 0; i < index.length; i++) {
+                index[i] = -1;
+                for (int j = 0; j < key.result().size(); j++) {
+                    if (key.result().get(j).equalsIgnoreCase(key.requested().get(i))) {
+                        index[i] = j;
+                        break;
+                    }
+                }
+                if (index[i] < 0) {
+                    throw new IllegalArgumentException("column " + key.requested().get(i) + " is not found in the result");
+                }
+            }
+            return index;
+        });
+    }
+
+    private class ColumnIndexRowMapper<T> implements BiFunction<Row, RowMetadata, T> {
+
+        private record Resolved(RowMetadata metadata, int[] index) {
+        }
+
+        private final List<String> columns;
+        private final ColumnIndexRowMapping<T> mapping;
+        private volatile Resolved resolved;
+
+        ColumnIndexRowMapper(List<String> columns, ColumnIndexRowMapping<T> mapping) {
+            this.columns = columns;
+            this.mapping = mapping;
+        }
+
+        // rows of the same result share the metadata instance, only the first row of a result is resolved.
+        @Override
+        public T apply(Row row, RowMetadata metadata) {
+            var current = this.resolved;
+            if (current == null || current.metadata() != metadata) {
+                current = new Resolved(metadata, resolve(this.columns, metadata));
+                this.resolved = current;
+            }
+            return this.mapping.map(row, current.index());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.spi.Row;
+
+/**
+ * Maps a row by the positions of the requested columns, see {@link ColumnIndexRowMappers}.
+ */
+@FunctionalInterface
+public interface ColumnIndexRowMapping<T> {
+
+    /**
+     * @param index {@code index[i]} is the position of the i-th requested column in the current row.
+     */
+    T map(Row row, int[] index);
+}
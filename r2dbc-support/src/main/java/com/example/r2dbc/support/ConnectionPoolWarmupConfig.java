@@ -0,0 +1,30 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.pool.ConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Warms up the {@link ConnectionPool} beans to {@code spring.r2dbc.pool.initial-size} before the application is ready,
+ * import it by {@code @Import(ConnectionPoolWarmupConfig.class)}.
+ * <p>
+ * The readiness state is changed to ACCEPTING_TRAFFIC after the application runners, the warm-up fails the startup
+ * when it does not complete in {@code r2dbc.pool.warmup-timeout}(30 seconds by default).
+ */
+@Configuration
+@Slf4j
+public class ConnectionPoolWarmupConfig {
+
+    @Bean
+    ApplicationRunner connectionPoolWarmup(ObjectProvider<ConnectionPool> pools, Environment env) {
+        var timeout = Duration.parse(env.getProperty("r2dbc.pool.warmup-timeout", "PT30S"));
+        return _ -> pools.orderedStream()
+                .forEach(pool -> log.info("warmed up connection pool: {} connections created", pool.warmup().block(timeout)));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.r2dbc.support;
+
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterConvertCallback;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the {@link EntityCacheManager} in sync with the entities going through the templates: a saved
+ * entity is evicted, and evicted again when its transaction completes, and an entity read by any query
+ * replaces an older version of it in the cache.
+ */
+public class EntityCacheCallbacks implements AfterSaveCallback<Object>, AfterConvertCallback<Object> {
+
+    private final EntityCacheManager cacheManager;
+
+    public EntityCacheCallbacks(EntityCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    // a `findById` out of the transaction could load and cache the old row before the commit,
+    // the second eviction removes it once the new row is visible.
+    @Override
+    public Publisher<Object> onAfterSave(Object entity, OutboundRow outboundRow, SqlIdentifier table) {
+        if (!this.cacheManager.isCached(entity.getClass())) {
+            return Mono.just(entity);
+        }
+        Runnable evict = () -> this.cacheManager.evict(entity);
+        evict.run();
+        return this.cacheManager.afterCompletion(evict).thenReturn(entity);
+    }
+
+    @Override
+    public Publisher<Object> onAfterConvert(Object entity, SqlIdentifier table) {
+        if (this.cacheManager.isCached(entity.getClass())) {
+            this.cacheManager.refresh(entity);
+        }
+        return Mono.just(entity);
+    }
+}
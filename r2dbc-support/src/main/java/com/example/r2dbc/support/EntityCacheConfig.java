@@ -0,0 +1,49 @@
+package com.example.r2dbc.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+/**
+ * Enables the entity cache for the repositories annotated with {@link CachedRepository}, import it
+ * by {@code @Import(EntityCacheConfig.class)}.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    @Bean
+    EntityCacheManager entityCacheManager(R2dbcMappingContext mappingContext, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new EntityCacheManager(mappingContext, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    EntityCacheCallbacks entityCacheCallbacks(EntityCacheManager entityCacheManager) {
+        return new EntityCacheCallbacks(entityCacheManager);
+    }
+
+    // adds the `EntityCacheInterceptor` to the repository proxies, before the repositories are created.
+    @Bean
+    static BeanPostProcessor entityCacheRepositoryPostProcessor(ObjectProvider<EntityCacheManager> entityCacheManager) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+                        var settings = AnnotatedElementUtils.findMergedAnnotation(repositoryInformation.getRepositoryInterface(), CachedRepository.class);
+                        if (settings != null) {
+                            var cacheManager = entityCacheManager.getObject();
+                            cacheManager.register(repositoryInformation.getDomainType(), settings);
+                            proxyFactory.addAdvice(new EntityCacheInterceptor(cacheManager, repositoryInformation.getDomainType()));
+                        }
+                    }));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.r2dbc.support;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serves {@code findById} of a {@link CachedRepository} from the {@link EntityCacheManager}, and evicts the
+ * deleted entities. The saved entities are evicted by {@link EntityCacheCallbacks}.
+ */
+class EntityCacheInterceptor implements MethodInterceptor {
+
+    private final EntityCacheManager cacheManager;
+    private final Class<?> domainType;
+
+    EntityCacheInterceptor(EntityCacheManager cacheManager, Class<?> domainType) {
+        this.cacheManager = cacheManager;
+        this.domainType = domainType;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        var name = invocation.getMethod().getName();
+        var args = invocation.getArguments();
+        if (args.length == 1 && args[0] != null && !(args[0] instanceof Publisher<?>) && !(args[0] instanceof Iterable<?>)) {
+            if (name.equals("findById")) {
+                return this.cacheManager.findById(this.domainType, args[0], () -> proceed(invocation));
+            }
+            if (name.equals("deleteById")) {
+                return evictFinally(invocation.proceed(), () -> this.cacheManager.evict(this.domainType, args[0]));
+            }
+            if (name.equals("delete") && this.domainType.isInstance(args[0])) {
+                return evictFinally(invocation.proceed(), () -> this.cacheManager.evict(args[0]));
+            }
+        }
+        // the other deletions, eg. `deleteAll` and derived `deleteBy...` queries, clear the cache of the entity.
+        if (name.startsWith("delete")) {
+            return evictFinally(invocation.proceed(), () -> this.cacheManager.evictAll(this.domainType));
+        }
+        return invocation.proceed();
+    }
+
+    // evicts when the deletion is done, and again when its transaction completes.
+    private Object evictFinally(Object result, Runnable evict) {
+        return switch (result) {
+            case Mono<?> mono -> this.cacheManager.afterCompletion(evict).then(mono).doFinally(_ -> evict.run());
+            case Flux<?> flux -> this.cacheManager.afterCompletion(evict).thenMany(flux).doFinally(_ -> evict.run());
+            case null, default -> {
+                evict.run();
+                yield result;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Mono<T> proceed(MethodInvocation invocation) {
+        try {
+            return (Mono<T>) invocation.proceed();
+        } catch (Throwable e) {
+            return Mono.error(e);
+        }
+    }
+}
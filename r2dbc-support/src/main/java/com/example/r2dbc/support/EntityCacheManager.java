@@ -0,0 +1,152 @@
+package com.example.r2dbc.support;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.relational.core.mapping.RelationalMappingContext;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps an in-process cache of entities by id for every repository annotated with {@link CachedRepository}.
+ * <p>
+ * Concurrent misses of the same id share one query, and a cached entity is replaced when a newer
+ * {@code @Version} of it is read by any other query. The hit/miss/eviction counts are published as
+ * {@code cache.*} metrics when a {@link MeterRegistry} is given.
+ */
+@Slf4j
+public class EntityCacheManager {
+
+    private final RelationalMappingContext mappingContext;
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, AsyncCache<Object, Object>> caches = new ConcurrentHashMap<>();
+
+    public EntityCacheManager(RelationalMappingContext mappingContext) {
+        this(mappingContext, null);
+    }
+
+    public EntityCacheManager(RelationalMappingContext mappingContext, MeterRegistry meterRegistry) {
+        this.mappingContext = mappingContext;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void register(Class<?> type, CachedRepository settings) {
+        this.caches.computeIfAbsent(type, _ -> {
+            log.debug("caching entities of {}: {}", type.getName(), settings);
+            AsyncCache<Object, Object> cache = Caffeine.newBuilder()
+                    .maximumSize(settings.maximumSize())
+                    .expireAfterWrite(Duration.parse(settings.expireAfterWrite()))
+                    .recordStats()
+                    .buildAsync();
+            if (this.meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(this.meterRegistry, cache.synchronous(), type.getSimpleName());
+            }
+            return cache;
+        });
+    }
+
+    public boolean isCached(Class<?> type) {
+        return this.caches.containsKey(type);
+    }
+
+    // an entity is read from the database directly in a transaction, so the transaction sees its own changes.
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> findById(Class<?> type, Object id, Supplier<Mono<T>> loader) {
+        var cache = this.caches.get(type);
+        if (cache == null) {
+            return loader.get();
+        }
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .map(TransactionSynchronizationManager::isActualTransactionActive)
+                .onErrorReturn(NoTransactionException.class, false)
+                .flatMap(inTransaction -> inTransaction
+                        ? loader.get()
+                        // the loading is not cancelled with a subscriber, it is shared by all concurrent misses.
+                        // an empty result is not cached, a loading evicted in the meantime is not cached either.
+                        : Mono.fromFuture(() -> cache.get(id, (_, _) -> loader.get().map(Object.class::cast).toFuture()), true)
+                                .map(entity -> (T) entity)
+                );
+    }
+
+    public void evict(Class<?> type, Object id) {
+        var cache = this.caches.get(type);
+        if (cache != null && id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    public void evict(Object entity) {
+        evict(entity.getClass(), idOf(entity));
+    }
+
+    public void evictAll(Class<?> type) {
+        var cache = this.caches.get(type);
+        if (cache != null) {
+            cache.synchronous().invalidateAll();
+        }
+    }
+
+    // runs `action` when the current transaction is committed or rolled back, out of a transaction it is a no-op.
+    public Mono<Void> afterCompletion(Runnable action) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(synchronizationManager -> synchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCompletion(int status) {
+                        return Mono.fromRunnable(action);
+                    }
+                }))
+                .onErrorResume(NoTransactionException.class, _ -> Mono.empty())
+                .then();
+    }
+
+    // replaces the cached entity if `entity` is a newer version of it, an older version read from a lagging
+    // replica, or a loading in flight when the entity is saved, does not overwrite the cached one.
+    public void refresh(Object entity) {
+        var cache = this.caches.get(entity.getClass());
+        var id = idOf(entity);
+        if (cache == null || id == null) {
+            return;
+        }
+        cache.synchronous().asMap().computeIfPresent(id, (_, cached) -> {
+            if (isStale(cached, entity)) {
+                log.debug("replace stale cached entity: {}", cached);
+                return entity;
+            }
+            return cached;
+        });
+    }
+
+    public Map<String, CacheStats> stats() {
+        return this.caches.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().getSimpleName(), e -> e.getValue().synchronous().stats()));
+    }
+
+    private boolean isStale(Object cached, Object loaded) {
+        var persistentEntity = this.mappingContext.getRequiredPersistentEntity(loaded.getClass());
+        if (!persistentEntity.hasVersionProperty()) {
+            return !cached.equals(loaded);
+        }
+        var versionProperty = persistentEntity.getRequiredVersionProperty();
+        var cachedVersion = persistentEntity.getPropertyAccessor(cached).getProperty(versionProperty);
+        var loadedVersion = persistentEntity.getPropertyAccessor(loaded).getProperty(versionProperty);
+        return cachedVersion instanceof Number c && loadedVersion instanceof Number l && c.longValue() < l.longValue();
+    }
+
+    private Object idOf(Object entity) {
+        return this.mappingContext.getRequiredPersistentEntity(entity.getClass())
+                .getIdentifierAccessor(entity)
+                .getIdentifier();
+    }
+}
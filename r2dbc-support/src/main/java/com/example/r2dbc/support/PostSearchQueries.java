@@ -0,0 +1,47 @@
+package com.example.r2dbc.support;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * The ranked full-text search on the {@code posts} table shared by the examples, it requires the {@code pg_trgm}
+ * extension and the generated {@code search_vector} column created by the schema scripts.
+ */
+public final class PostSearchQueries {
+
+    /**
+     * Every word is matched as a prefix, titles are also matched by trigram similarity to tolerate typos,
+     * the snippets are highlighted by {@code ts_headline} on the final page only.
+     * <p>
+     * The parameters are {@code :tsQuery}, built by {@link #prefixTsQuery(String)}, {@code :keyword} and {@code :limit}.
+     */
+    public static final String SEARCH = """
+            SELECT id, title, rank,
+                   ts_headline('english', coalesce(content, ''), q, 'StartSel=<mark>, StopSel=</mark>, MaxFragments=2') AS snippet
+            FROM (
+                SELECT id, title, content, q, ts_rank(search_vector, q) + similarity(title, :keyword) AS rank
+                FROM posts, to_tsquery('english', :tsQuery) q
+                WHERE search_vector @@ q OR title % :keyword
+                ORDER BY rank DESC
+                LIMIT :limit
+            ) matched
+            ORDER BY rank DESC
+            """;
+
+    private PostSearchQueries() {
+    }
+
+    /**
+     * Converts a user query to a prefix matching {@code tsquery}, eg. {@code reactive spr} to {@code reactive:* & spr:*},
+     * any characters other than letters and digits are dropped.
+     */
+    public static String prefixTsQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        return Arrays.stream(query.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Routes read-only work to a set of replicas and everything else to the primary.
+ * <p>
+ * Read-only transactions are marked by {@link ReadWriteRoutingTransactionManager}, other reads can opt in
+ * by {@code contextWrite(ReadWriteRoutingConnectionFactory.readOnly())}. The replica lag is probed periodically,
+ * a replica is skipped when it lags behind more than {@code maxLag} or can not be reached, and the primary
+ * serves the reads when no replica is available.
+ * <p>
+ * A query out of a read-only transaction, eg. a {@code Flux} query, is always sent to the primary, the routing
+ * can not tell a read from a write by the connection request, it is only sent to a replica if the caller opts in.
+ */
+@Slf4j
+public class ReadWriteRoutingConnectionFactory extends AbstractRoutingConnectionFactory implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    private static final String READ_ONLY_KEY = ReadWriteRoutingConnectionFactory.class.getName() + ".READ_ONLY";
+
+    // a replica having replayed all the WAL it received is caught up, even if the primary has been idle for a while and
+    // the last replayed transaction is old, else the lag is the time since the last replayed transaction.
+    private static final String LAG_SQL = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0
+                        WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END::float8 AS lag
+            """;
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_PENDING
+    }
+
+    static final class Replica {
+        final String key;
+        final ConnectionFactory connectionFactory;
+        volatile boolean available = true;
+        volatile Duration lag = Duration.ZERO;
+
+        Replica(String key, ConnectionFactory connectionFactory) {
+            this.key = key;
+            this.connectionFactory = connectionFactory;
+        }
+
+        // connections in use plus the ones waiting for a connection, only a pool is able to tell.
+        int pending() {
+            return this.connectionFactory instanceof ConnectionPool pool
+                    ? pool.getMetrics().map(m -> m.acquiredSize() + m.pendingAcquireSize()).orElse(0)
+                    : 0;
+        }
+    }
+
+    private final ConnectionFactory primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final Duration maxLag;
+    private final Duration probeInterval;
+    private final AtomicInteger counter = new AtomicInteger();
+    private Disposable probe;
+
+    public ReadWriteRoutingConnectionFactory(ConnectionFactory primary,
+                                             List<ConnectionFactory> replicas,
+                                             Selection selection,
+                                             Duration maxLag,
+                                             Duration probeInterval) {
+        this.primary = primary;
+        this.replicas = IntStream.range(0, replicas.size())
+                .mapToObj(i -> new Replica("replica-" + i, replicas.get(i)))
+                .toList();
+        this.selection = selection;
+        this.maxLag = maxLag;
+        this.probeInterval = probeInterval;
+
+        var targets = new HashMap<String, ConnectionFactory>();
+        targets.put(PRIMARY, primary);
+        this.replicas.forEach(r -> targets.put(r.key, r.connectionFactory));
+        setTargetConnectionFactories(targets);
+        setDefaultTargetConnectionFactory(primary);
+    }
+
+    public static Context readOnly() {
+        return Context.of(READ_ONLY_KEY, true);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (!this.replicas.isEmpty()) {
+            this.probe = Flux.interval(Duration.ZERO, this.probeInterval)
+                    .concatMap(_ -> Flux.fromIterable(this.replicas).flatMap(this::probeLag))
+                    .subscribe();
+        }
+    }
+
+    @Override
+    public Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(ctx -> {
+            if (!ctx.getOrDefault(READ_ONLY_KEY, false)) {
+                return Mono.just(PRIMARY);
+            }
+            var available = this.replicas.stream().filter(r -> r.available).toList();
+            if (available.isEmpty()) {
+                return Mono.just(PRIMARY);
+            }
+            var replica = switch (this.selection) {
+                case ROUND_ROBIN -> available.get(Math.floorMod(this.counter.getAndIncrement(), available.size()));
+                case LEAST_PENDING -> available.stream().min(Comparator.comparingInt(Replica::pending)).orElseThrow();
+            };
+            return Mono.just(replica.key);
+        });
+    }
+
+    private Mono<Void> probeLag(Replica replica) {
+        return Mono.usingWhen(
+                        replica.connectionFactory.create(),
+                        connection -> Mono.from(connection.createStatement(LAG_SQL).execute())
+                                .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get("lag", Double.class)))),
+                        Connection::close
+                )
+                .timeout(this.probeInterval)
+                .doOnNext(lag -> {
+                    replica.lag = Duration.ofMillis((long) (lag * 1000));
+                    replica.available = replica.lag.compareTo(this.maxLag) <= 0;
+                    if (!replica.available) {
+                        log.warn("{} lags behind {}, reads fall back to other replicas", replica.key, replica.lag);
+                    }
+                })
+                .onErrorResume(error -> {
+                    log.warn("{} is not available: {}", replica.key, error.getMessage());
+                    replica.available = false;
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        if (this.probe != null) {
+            this.probe.dispose();
+        }
+        if (this.primary instanceof ConnectionPool pool) {
+            pool.dispose();
+        }
+        this.replicas.forEach(r -> {
+            if (r.connectionFactory instanceof ConnectionPool pool) {
+                pool.dispose();
+            }
+        });
+    }
+}
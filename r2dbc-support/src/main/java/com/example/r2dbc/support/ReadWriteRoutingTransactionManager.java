@@ -0,0 +1,29 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * The read-only flag of a transaction is bound to the synchronization only after the connection is
+ * acquired in {@code doBegin}, so it is passed through the Reactor context to
+ * {@link ReadWriteRoutingConnectionFactory} instead.
+ */
+public class ReadWriteRoutingTransactionManager extends R2dbcTransactionManager {
+
+    public ReadWriteRoutingTransactionManager(ConnectionFactory connectionFactory) {
+        super(connectionFactory);
+    }
+
+    @Override
+    protected Mono<Void> doBegin(TransactionSynchronizationManager synchronizationManager,
+                                 Object transaction,
+                                 TransactionDefinition definition) {
+        var begin = super.doBegin(synchronizationManager, transaction, definition);
+        return definition.isReadOnly()
+                ? begin.contextWrite(ReadWriteRoutingConnectionFactory.readOnly())
+                : begin;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.r2dbc.support;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Concurrent identical calls(the same method and arguments) of an annotated repository read method share one
+ * execution, enabled by {@code @Import(SingleFlightConfig.class)}.
+ * <p>
+ * The shared execution is cancelled when all callers cancel, and it fails all callers after {@link #timeout()}.
+ * The result is replayed to the callers joining late, so a method returning many rows is buffered until it completes.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SingleFlight {
+
+    /**
+     * The timeout of the shared execution, in ISO-8601 format.
+     */
+    String timeout() default "PT10S";
+}
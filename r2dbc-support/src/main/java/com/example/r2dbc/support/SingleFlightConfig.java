@@ -0,0 +1,37 @@
+package com.example.r2dbc.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.util.Arrays;
+
+/**
+ * Enables {@link SingleFlight} on the repository methods, import it by {@code @Import(SingleFlightConfig.class)}.
+ */
+@Configuration
+public class SingleFlightConfig {
+
+    // adds the `SingleFlightInterceptor` to the proxies of repositories having `@SingleFlight` methods.
+    @Bean
+    static BeanPostProcessor singleFlightRepositoryPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+                        var repositoryInterface = repositoryInformation.getRepositoryInterface();
+                        var annotated = Arrays.stream(repositoryInterface.getMethods())
+                                .anyMatch(m -> AnnotatedElementUtils.hasAnnotation(m, SingleFlight.class));
+                        if (annotated) {
+                            proxyFactory.addAdvice(new SingleFlightInterceptor(repositoryInterface));
+                        }
+                    }));
+                }
+                return bean;
+            }
+        };
+    }
+}
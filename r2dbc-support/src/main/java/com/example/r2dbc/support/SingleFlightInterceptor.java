@@ -0,0 +1,88 @@
+package com.example.r2dbc.support;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.reactivestreams.Publisher;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shares one execution of the {@link SingleFlight} methods between the concurrent identical calls out of a transaction.
+ */
+class SingleFlightInterceptor implements MethodInterceptor {
+
+    private final Class<?> repositoryInterface;
+    private final Map<Method, Optional<Duration>> timeouts = new ConcurrentHashMap<>();
+    private final Map<Key, Flux<Object>> inFlight = new ConcurrentHashMap<>();
+
+    SingleFlightInterceptor(Class<?> repositoryInterface) {
+        this.repositoryInterface = repositoryInterface;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        var method = invocation.getMethod();
+        var timeout = this.timeouts.computeIfAbsent(method, this::timeoutOf);
+        if (timeout.isEmpty()) {
+            return invocation.proceed();
+        }
+        var key = new Key(method, Arrays.asList(invocation.getArguments()));
+        // a read in a transaction is not shared, it should see the changes of the transaction.
+        var inTransaction = TransactionSynchronizationManager.forCurrentTransaction()
+                .map(TransactionSynchronizationManager::isActualTransactionActive)
+                .onErrorReturn(NoTransactionException.class, false);
+        var source = Flux.defer(() -> proceed(invocation));
+        if (Mono.class.isAssignableFrom(method.getReturnType())) {
+            // `fromDirect` does not cancel the shared execution after the first element.
+            return inTransaction.flatMap(tx -> tx ? Mono.fromDirect(source) : Mono.fromDirect(share(key, source, timeout.get())));
+        }
+        return inTransaction.flatMapMany(tx -> tx ? source : share(key, source, timeout.get()));
+    }
+
+    private Flux<Object> share(Key key, Flux<Object> source, Duration timeout) {
+        return this.inFlight.computeIfAbsent(key, k -> {
+            var holder = new AtomicReference<Flux<Object>>();
+            Flux<Object> shared = source
+                    .timeout(timeout)
+                    .doFinally(_ -> this.inFlight.remove(k, holder.get()))
+                    .replay()
+                    .refCount(1);
+            holder.set(shared);
+            return shared;
+        });
+    }
+
+    // only the reactive methods can be shared.
+    private Optional<Duration> timeoutOf(Method method) {
+        var specificMethod = ClassUtils.getMostSpecificMethod(method, this.repositoryInterface);
+        var singleFlight = AnnotatedElementUtils.findMergedAnnotation(specificMethod, SingleFlight.class);
+        if (singleFlight == null || !Publisher.class.isAssignableFrom(method.getReturnType())) {
+            return Optional.empty();
+        }
+        return Optional.of(Duration.parse(singleFlight.timeout()));
+    }
+
+    private static Flux<Object> proceed(MethodInvocation invocation) {
+        try {
+            return Flux.from((Publisher<?>) invocation.proceed());
+        } catch (Throwable e) {
+            return Flux.error(e);
+        }
+    }
+
+    private record Key(Method method, List<Object> arguments) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionControlFilterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private ConnectionFactory connectionFactory;
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setup() {
+        this.connectionFactory = mock(ConnectionFactory.class);
+        this.filter = filter(this.connectionFactory);
+    }
+
+    private AdmissionControlFilter filter(ConnectionFactory connectionFactory) {
+        return new AdmissionControlFilter(
+                List.of(
+                        AdmissionControlFilter.RouteGroup.unmetered("actuator", "/actuator/**"),
+                        AdmissionControlFilter.RouteGroup.of("list", true, 2, HttpMethod.GET, "/posts")
+                ),
+                AdmissionControlFilter.RouteGroup.of("default", false, 128, null, "/**"),
+                connectionFactory,
+                10,
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(2),
+                Duration.ofSeconds(10),
+                this.clock::get
+        );
+    }
+
+    // a request taking `latency`, responding with `contentType` if not null.
+    private MockServerWebExchange exchange(String path, Duration latency, MediaType contentType) {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        WebFilterChain chain = e -> Mono.fromRunnable(() -> {
+            if (contentType != null) {
+                e.getResponse().getHeaders().setContentType(contentType);
+            }
+            this.clock.addAndGet(latency.toNanos());
+        });
+        this.filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    private MockServerWebExchange list() {
+        return exchange("/posts", Duration.ofMillis(10), null);
+    }
+
+    @Test
+    void testShedOnHighLatencyAndRecover() {
+        assertThat(list().getResponse().getStatusCode()).isNull();
+
+        exchange("/posts/1", Duration.ofSeconds(10), null);
+        var rejected = list().getResponse();
+        assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+
+        // no request completes in the meantime, the latency decays below the limit by itself.
+        this.clock.addAndGet(Duration.ofSeconds(20).toNanos());
+        assertThat(this.filter.recentLatency()).isLessThan(Duration.ofSeconds(1));
+        assertThat(list().getResponse().getStatusCode()).isNull();
+    }
+
+    @Test
+    void testStreamingAndUnmeteredRequestsAreNotSampled() {
+        exchange("/posts/stream", Duration.ofMinutes(1), MediaType.APPLICATION_NDJSON);
+        exchange("/posts/events", Duration.ofMinutes(1), MediaType.TEXT_EVENT_STREAM);
+        exchange("/actuator/health", Duration.ofMinutes(1), MediaType.APPLICATION_JSON);
+
+        assertThat(this.filter.recentLatency()).isZero();
+        assertThat(list().getResponse().getStatusCode()).isNull();
+    }
+
+    @Test
+    void testShedOnPendingAcquisitions() {
+        var pool = mock(ConnectionPool.class);
+        var metrics = mock(PoolMetrics.class);
+        when(pool.getMetrics()).thenReturn(Optional.of(metrics));
+        this.filter = filter(pool);
+
+        when(metrics.pendingAcquireSize()).thenReturn(10);
+        assertThat(list().getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        // the other groups are not shed.
+        assertThat(exchange("/posts/1", Duration.ofMillis(10), null).getResponse().getStatusCode()).isNull();
+
+        when(metrics.pendingAcquireSize()).thenReturn(0);
+        assertThat(list().getResponse().getStatusCode()).isNull();
+    }
+
+    @Test
+    void testConcurrencyBudget() {
+        var exchanges = List.of(
+                MockServerWebExchange.from(MockServerHttpRequest.get("/posts")),
+                MockServerWebExchange.from(MockServerHttpRequest.get("/posts")),
+                MockServerWebExchange.from(MockServerHttpRequest.get("/posts"))
+        );
+        // the requests in flight never complete.
+        exchanges.forEach(exchange -> this.filter.filter(exchange, _ -> Mono.never()).subscribe());
+
+        assertThat(exchanges.get(0).getResponse().getStatusCode()).isNull();
+        assertThat(exchanges.get(1).getResponse().getStatusCode()).isNull();
+        assertThat(exchanges.get(2).getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void testInFlightIsReleased() {
+        var group = AdmissionControlFilter.RouteGroup.of("list", true, 2, HttpMethod.GET, "/posts");
+        var filter = new AdmissionControlFilter(List.of(group), AdmissionControlFilter.RouteGroup.of("default", false, 128, null, "/**"),
+                this.connectionFactory, 10, Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofSeconds(10), this.clock::get);
+
+        var inFlight = new AtomicLong();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/posts")), _ -> Mono.fromRunnable(() -> inFlight.set(group.inFlight())))
+                .block();
+        assertThat(inFlight).hasValue(1);
+        assertThat(group.inFlight()).isZero();
+    }
+
+    @Test
+    void testConcurrentLatencySamples() throws InterruptedException {
+        var threads = IntStream.range(0, 8)
+                .mapToObj(i -> Thread.ofPlatform().start(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        this.filter.recordLatency(Duration.ofMillis(10 + (i + j) % 10).toNanos());
+                    }
+                }))
+                .toList();
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        // the average of the samples is in their range, no sample is lost into a NaN or a torn value.
+        assertThat(this.filter.recentLatency()).isBetween(Duration.ofMillis(10), Duration.ofMillis(20));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// a micro-benchmark of the per-row cost, the name-based mapping against `ColumnIndexRowMappers`,
+// eg. `mvn test -Dtest=ColumnIndexRowMappersBenchmark -Dbenchmark=true`, the results are printed to the console.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ColumnIndexRowMappersBenchmark {
+
+    record Post(UUID id, String title, String content, String status, List<String> tags, LocalDateTime createdAt) {
+    }
+
+    static final List<String> COLUMNS = List.of("id", "title", "content", "status", "tags", "created_at");
+
+    // the mapping of `PostRepository` before `ColumnIndexRowMappers`, every column is looked up by name on every row.
+    static final BiFunction<Row, RowMetadata, Post> MAPPING_FUNCTION = (row, _) -> new Post(
+            row.get("id", UUID.class),
+            row.get("title", String.class),
+            row.get("content", String.class),
+            row.get("status", String.class),
+            List.of(row.get("tags", String[].class)),
+            row.get("created_at", LocalDateTime.class)
+    );
+
+    static final ColumnIndexRowMapping<Post> MAPPING = (row, index) -> new Post(
+            row.get(index[0], UUID.class),
+            row.get(index[1], String.class),
+            row.get(index[2], String.class),
+            row.get(index[3], String.class),
+            List.of(row.get(index[4], String[].class)),
+            row.get(index[5], LocalDateTime.class)
+    );
+
+    private static final int ROWS = 10_000;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 100;
+
+    // `SELECT *` of a wide table, the mapped columns are spread over the row.
+    private final TestRows.Metadata metadata = TestRows.Metadata.of(
+            "id", "title", "content", "status", "version", "search_vector", "tags",
+            "created_by", "updated_at", "updated_by", "created_at");
+
+    private final List<TestRows.TestRow> rows = IntStream.range(0, ROWS)
+            .mapToObj(i -> new TestRows.TestRow(this.metadata, new Object[]{
+                    UUID.randomUUID(), "title " + i, "content " + i, "DRAFT", 0L, "", new String[]{"a", "b"},
+                    "user", LocalDateTime.now(), "user", LocalDateTime.now()}))
+            .toList();
+
+    @Test
+    void compareRowMappers() {
+        var rowMappers = new ColumnIndexRowMappers();
+        var byName = measure(() -> MAPPING_FUNCTION);
+        var byIndex = measure(() -> rowMappers.of(COLUMNS, MAPPING));
+
+        System.out.printf("[ColumnIndexRowMappersBenchmark] by name: %.1f ns/row, by index: %.1f ns/row%n", byName, byIndex);
+        assertThat(byIndex).isPositive();
+    }
+
+    // the mean time per row of the measured iterations, a mapper is created per result as `DatabaseClient.map` does.
+    private double measure(Supplier<BiFunction<Row, RowMetadata, Post>> mappers) {
+        long blackhole = 0;
+        long elapsed = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            var mapper = mappers.get();
+            var started = System.nanoTime();
+            for (var row : this.rows) {
+                blackhole += mapper.apply(row, this.metadata).title().length();
+            }
+            if (i >= WARMUP_ITERATIONS) {
+                elapsed += System.nanoTime() - started;
+            }
+        }
+        assertThat(blackhole).isPositive();
+        return (double) elapsed / ITERATIONS / ROWS;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.r2dbc.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnIndexRowMappersTest {
+
+    record Item(String id, String title) {
+    }
+
+    private final ColumnIndexRowMappers rowMappers = new ColumnIndexRowMappers();
+
+    @Test
+    void testMapByResolvedIndex() {
+        var metadata = TestRows.Metadata.of("TITLE", "extra", "id");
+        var mapper = this.rowMappers.of(List.of("id", "title"),
+                (row, index) -> new Item(row.get(index[0], String.class), row.get(index[1], String.class)));
+
+        var first = new TestRows.TestRow(metadata, new Object[]{"a", "x", "1"});
+        var second = new TestRows.TestRow(metadata, new Object[]{"b", "y", "2"});
+
+        assertThat(mapper.apply(first, metadata)).isEqualTo(new Item("1", "a"));
+        assertThat(mapper.apply(second, metadata)).isEqualTo(new Item("2", "b"));
+    }
+
+    @Test
+    void testResolvedOncePerResult() {
+        var metadata = TestRows.Metadata.of("id", "title");
+        var mapper = this.rowMappers.of(List.of("title"), (row, index) -> index);
+
+        var index = mapper.apply(new TestRows.TestRow(metadata, new Object[]{"1", "a"}), metadata);
+        // the rows of the same result, and the results of the same columns share the resolved index.
+        assertThat(mapper.apply(new TestRows.TestRow(metadata, new Object[]{"2", "b"}), metadata)).isSameAs(index);
+        var another = TestRows.Metadata.of("id", "title");
+        assertThat(mapper.apply(new TestRows.TestRow(another, new Object[]{"3", "c"}), another)).isSameAs(index);
+
+        // the columns in another order are resolved again.
+        var reordered = TestRows.Metadata.of("title", "id");
+        assertThat(mapper.apply(new TestRows.TestRow(reordered, new Object[]{"d", "4"}), reordered)).containsExactly(0);
+    }
+
+    @Test
+    void testMissingColumn() {
+        var metadata = TestRows.Metadata.of("id");
+        var mapper = this.rowMappers.of(List.of("id", "title"), (row, index) -> index);
+
+        assertThatThrownBy(() -> mapper.apply(new TestRows.TestRow(metadata, new Object[]{"1"}), metadata))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("title");
+    }
+}
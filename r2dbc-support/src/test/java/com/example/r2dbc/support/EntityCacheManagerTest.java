@@ -0,0 +1,115 @@
+package com.example.r2dbc.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.AbstractReactiveTransactionManager;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class EntityCacheManagerTest {
+
+    record Item(@Id Long id, String name, @Version Long version) {
+    }
+
+    @CachedRepository
+    interface ItemRepository {
+    }
+
+    // a transaction manager without a resource, only the synchronizations are run.
+    static class NoOpTransactionManager extends AbstractReactiveTransactionManager {
+
+        @Override
+        protected Object doGetTransaction(TransactionSynchronizationManager synchronizationManager) {
+            return new Object();
+        }
+
+        @Override
+        protected Mono<Void> doBegin(TransactionSynchronizationManager synchronizationManager, Object transaction, TransactionDefinition definition) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doCommit(TransactionSynchronizationManager synchronizationManager, GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doRollback(TransactionSynchronizationManager synchronizationManager, GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+    }
+
+    private EntityCacheManager cacheManager;
+    private EntityCacheCallbacks callbacks;
+
+    @BeforeEach
+    void setup() {
+        this.cacheManager = new EntityCacheManager(new R2dbcMappingContext());
+        this.cacheManager.register(Item.class, ItemRepository.class.getAnnotation(CachedRepository.class));
+        this.callbacks = new EntityCacheCallbacks(this.cacheManager);
+    }
+
+    private Mono<Item> findById(Long id, Item loaded) {
+        return this.cacheManager.findById(Item.class, id, () -> Mono.just(loaded));
+    }
+
+    @Test
+    void testCachedUntilSaved() {
+        var cached = new Item(1L, "cached", 0L);
+        var updated = new Item(1L, "updated", 1L);
+
+        findById(1L, cached)
+                .then(findById(1L, updated))
+                .as(StepVerifier::create)
+                .expectNext(cached)
+                .verifyComplete();
+
+        Mono.from(this.callbacks.onAfterSave(updated, null, null))
+                .then(findById(1L, updated))
+                .as(StepVerifier::create)
+                .expectNext(updated)
+                .verifyComplete();
+    }
+
+    @Test
+    void testEvictedAgainAfterCommit() {
+        var old = new Item(1L, "old", 0L);
+        var updated = new Item(1L, "updated", 1L);
+        var transactionalOperator = TransactionalOperator.create(new NoOpTransactionManager());
+
+        // a reader out of the transaction caches the old row between the save and the commit.
+        Mono.from(this.callbacks.onAfterSave(updated, null, null))
+                .flatMap(saved -> Mono.fromRunnable(() -> findById(1L, old).block()).thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .then(findById(1L, updated))
+                .as(StepVerifier::create)
+                .expectNext(updated)
+                .verifyComplete();
+    }
+
+    @Test
+    void testRefreshedByNewerVersion() {
+        var cached = new Item(1L, "cached", 1L);
+
+        findById(1L, cached).block();
+        this.callbacks.onAfterConvert(new Item(1L, "older", 0L), null);
+        findById(1L, null)
+                .as(StepVerifier::create)
+                .expectNext(cached)
+                .verifyComplete();
+
+        var newer = new Item(1L, "newer", 2L);
+        this.callbacks.onAfterConvert(newer, null);
+        findById(1L, null)
+                .as(StepVerifier::create)
+                .expectNext(newer)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.r2dbc.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostSearchQueriesTest {
+
+    @Test
+    void testPrefixTsQuery() {
+        assertThat(PostSearchQueries.prefixTsQuery("reactive spr")).isEqualTo("reactive:* & spr:*");
+        assertThat(PostSearchQueries.prefixTsQuery(" r2dbc's & (spring) ")).isEqualTo("r2dbc:* & s:* & spring:*");
+        assertThat(PostSearchQueries.prefixTsQuery("!!")).isEmpty();
+        assertThat(PostSearchQueries.prefixTsQuery(null)).isEmpty();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+class ReadWriteRoutingConnectionFactoryTest {
+
+    private ReadWriteRoutingConnectionFactory routing(List<ConnectionFactory> replicas) {
+        return new ReadWriteRoutingConnectionFactory(
+                mock(ConnectionFactory.class),
+                replicas,
+                ReadWriteRoutingConnectionFactory.Selection.ROUND_ROBIN,
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(5)
+        );
+    }
+
+    @Test
+    void testPrimaryByDefault() {
+        var routing = routing(List.of(mock(ConnectionFactory.class)));
+
+        routing.determineCurrentLookupKey()
+                .as(StepVerifier::create)
+                .expectNext(ReadWriteRoutingConnectionFactory.PRIMARY)
+                .verifyComplete();
+    }
+
+    @Test
+    void testReadOnlyRoundRobin() {
+        var routing = routing(List.of(mock(ConnectionFactory.class), mock(ConnectionFactory.class)));
+
+        routing.determineCurrentLookupKey()
+                .repeat(2)
+                .contextWrite(ReadWriteRoutingConnectionFactory.readOnly())
+                .as(StepVerifier::create)
+                .expectNext("replica-0", "replica-1", "replica-0")
+                .verifyComplete();
+    }
+
+    @Test
+    void testReadOnlyWithoutReplicas() {
+        var routing = routing(List.of());
+
+        routing.determineCurrentLookupKey()
+                .contextWrite(ReadWriteRoutingConnectionFactory.readOnly())
+                .as(StepVerifier::create)
+                .expectNext(ReadWriteRoutingConnectionFactory.PRIMARY)
+                .verifyComplete();
+    }
+}
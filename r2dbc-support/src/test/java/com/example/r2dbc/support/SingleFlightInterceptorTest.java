@@ -0,0 +1,101 @@
+package com.example.r2dbc.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightInterceptorTest {
+
+    interface ItemRepository {
+
+        @SingleFlight
+        Flux<String> findAll();
+
+        @SingleFlight(timeout = "PT0.1S")
+        Mono<String> findByName(String name);
+
+        Flux<String> findAllUnshared();
+    }
+
+    // counts the subscriptions, every subscription is a query.
+    static class DelayedItemRepository implements ItemRepository {
+        final AtomicInteger queries = new AtomicInteger();
+
+        @Override
+        public Flux<String> findAll() {
+            return Flux.just("a", "b").delaySubscription(Duration.ofMillis(50)).doOnSubscribe(_ -> this.queries.incrementAndGet());
+        }
+
+        @Override
+        public Mono<String> findByName(String name) {
+            return Mono.just(name).delaySubscription(Duration.ofSeconds(1)).doOnSubscribe(_ -> this.queries.incrementAndGet());
+        }
+
+        @Override
+        public Flux<String> findAllUnshared() {
+            return findAll();
+        }
+    }
+
+    private DelayedItemRepository target;
+    private ItemRepository repository;
+
+    @BeforeEach
+    void setup() {
+        this.target = new DelayedItemRepository();
+        var proxyFactory = new ProxyFactory(this.target);
+        proxyFactory.addInterface(ItemRepository.class);
+        proxyFactory.addAdvice(new SingleFlightInterceptor(ItemRepository.class));
+        this.repository = (ItemRepository) proxyFactory.getProxy();
+    }
+
+    @Test
+    void testConcurrentCallsShareOneExecution() {
+        Flux.range(0, 10)
+                .flatMap(_ -> this.repository.findAll().collectList())
+                .as(StepVerifier::create)
+                .expectNextCount(10)
+                .verifyComplete();
+        assertThat(this.target.queries).hasValue(1);
+
+        // the completed execution is not cached.
+        this.repository.findAll()
+                .as(StepVerifier::create)
+                .expectNext("a", "b")
+                .verifyComplete();
+        assertThat(this.target.queries).hasValue(2);
+    }
+
+    @Test
+    void testUnannotatedMethodIsNotShared() {
+        Flux.range(0, 3)
+                .flatMap(_ -> this.repository.findAllUnshared().collectList())
+                .as(StepVerifier::create)
+                .expectNext(List.of("a", "b"), List.of("a", "b"), List.of("a", "b"))
+                .verifyComplete();
+        assertThat(this.target.queries).hasValue(3);
+    }
+
+    @Test
+    void testSharedExecutionTimesOut() {
+        this.repository.findByName("a")
+                .as(StepVerifier::create)
+                .verifyError(TimeoutException.class);
+
+        // the failed execution is removed, the next call runs a new one.
+        this.repository.findByName("a")
+                .as(StepVerifier::create)
+                .verifyError(TimeoutException.class);
+        assertThat(this.target.queries).hasValue(2);
+    }
+}
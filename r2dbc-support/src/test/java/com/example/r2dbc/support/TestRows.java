@@ -0,0 +1,79 @@
+package com.example.r2dbc.support;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Type;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// in-memory rows, a column is looked up by name the way the Postgres driver does, by a case-insensitive scan.
+final class TestRows {
+
+    private TestRows() {
+    }
+
+    record Column(String name) implements ColumnMetadata {
+
+        @Override
+        public Type getType() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    record Metadata(List<Column> columns) implements RowMetadata {
+
+        static Metadata of(String... names) {
+            return new Metadata(Arrays.stream(names).map(Column::new).toList());
+        }
+
+        int indexOf(String name) {
+            for (int i = 0; i < this.columns.size(); i++) {
+                if (this.columns.get(i).name().equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+            throw new NoSuchElementException("column " + name + " is not found");
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(int index) {
+            return this.columns.get(index);
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(String name) {
+            return this.columns.get(indexOf(name));
+        }
+
+        @Override
+        public List<? extends ColumnMetadata> getColumnMetadatas() {
+            return this.columns;
+        }
+    }
+
+    record TestRow(Metadata metadata, Object[] values) implements Row {
+
+        @Override
+        public RowMetadata getMetadata() {
+            return this.metadata;
+        }
+
+        @Override
+        public <T> T get(int index, Class<T> type) {
+            return type.cast(this.values[index]);
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> type) {
+            return get(this.metadata.indexOf(name), type);
+        }
+    }
+}